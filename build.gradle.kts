@@ -12,6 +12,7 @@ plugins {
     id("java")
     id("java-library")
     id("maven-publish")
+    id("me.champeau.jmh") version "0.6.8"
 }
 
 apply(plugin = "java")
@@ -54,10 +55,26 @@ dependencies {
     implementation("org.ow2.asm:asm-tree:9.4")
     implementation("org.ow2.asm:asm-util:9.5")
 
+    testAnnotationProcessor(project(":processor"))
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.7.0")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.7.0")
+
+    jmhImplementation("org.openjdk.jol:jol-core:0.17")
 }
 
 tasks.test {
     useJUnitPlatform()
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("JSON")
+    profilers.set(listOf("gc"))
+
+    // fail the build on benchmark errors, like an exceeded
+    // memory budget, with -Pjmh.failOnError=true
+    failOnError.set(findProperty("jmh.failOnError") == "true")
+
+    // run a subset of the benchmarks with -Pjmh.includes=<regex>
+    (findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
 }
\ No newline at end of file
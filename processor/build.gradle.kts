@@ -0,0 +1,36 @@
+plugins {
+    id("java")
+    id("java-library")
+    id("maven-publish")
+}
+
+group = "tools.redstone"
+version = rootProject.version
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_16
+    targetCompatibility = JavaVersion.VERSION_16
+
+    withSourcesJar()
+    withJavadocJar()
+}
+
+publishing {
+    publications {
+        this.create("maven", MavenPublication::class) {
+            groupId = project.group as String?
+            artifactId = "picasso-processor"
+            version = project.version as String?
+            from(components.findByName("java"))
+        }
+    }
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    // only for the compile time constants, which are inlined
+    compileOnly(project(":"))
+}
@@ -0,0 +1,119 @@
+package tools.redstone.picasso.processor;
+
+import tools.redstone.picasso.AbstractionManager;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Records which classes implement which abstractions at compile time
+ * and writes them to an index resource, so impls can be registered
+ * without walking packages or loading classes.
+ *
+ * Like {@code AbstractionManager#getApplicableAbstractionClasses}, the
+ * base abstraction of a class is the first interface it directly
+ * implements which extends {@code Abstraction}.
+ *
+ * The index has one {@code <abstraction> <impl>} pair of binary
+ * class names per line, an abstraction with several impls has a
+ * line for each of them.
+ */
+public class ImplIndexProcessor extends AbstractProcessor {
+
+    /** The path of the index resource, a constant so picasso is only needed to compile the processor */
+    public static final String INDEX_RESOURCE = AbstractionManager.IMPL_INDEX_RESOURCE;
+
+    static final String NAME_Abstraction = "tools.redstone.picasso.usage.Abstraction";
+
+    final Map<String, Set<String>> implsByBaseClass = new TreeMap<>(); // The impl class names by base abstraction name, sorted for a stable output
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Set.of("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement abstractionElement = processingEnv.getElementUtils().getTypeElement(NAME_Abstraction);
+        if (abstractionElement == null)
+            return false; // not compiling against picasso
+
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+
+        TypeMirror abstractionType = processingEnv.getTypeUtils().erasure(abstractionElement.asType());
+        for (Element element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement type) {
+                visitType(type, abstractionType);
+            }
+        }
+
+        return false;
+    }
+
+    // Record the given type if it is an impl
+    // class, then visit its nested types
+    private void visitType(TypeElement type, TypeMirror abstractionType) {
+        if (type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT)) {
+            for (TypeMirror itf : type.getInterfaces()) {
+                TypeMirror erased = processingEnv.getTypeUtils().erasure(itf);
+                if (processingEnv.getTypeUtils().isAssignable(erased, abstractionType)) {
+                    TypeElement itfElement = (TypeElement) ((DeclaredType) itf).asElement();
+                    implsByBaseClass.computeIfAbsent(binaryName(itfElement), __ -> new TreeSet<>()).add(binaryName(type));
+                    break;
+                }
+            }
+        }
+
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed instanceof TypeElement nested) {
+                visitType(nested, abstractionType);
+            }
+        }
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void writeIndex() {
+        if (implsByBaseClass.isEmpty())
+            return;
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (var entry : implsByBaseClass.entrySet()) {
+                    for (String implClassName : entry.getValue()) {
+                        writer.write(entry.getKey() + " " + implClassName + "\n");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write impl index: " + e);
+        }
+    }
+
+}
@@ -1,2 +1,3 @@
 rootProject.name = "picasso"
 
+include("processor")
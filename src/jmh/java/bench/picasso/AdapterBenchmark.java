@@ -0,0 +1,152 @@
+package bench.picasso;
+
+import org.openjdk.jmh.annotations.*;
+import tools.redstone.picasso.AbstractionManager;
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.HandleAbstraction;
+import tools.redstone.picasso.adapter.Adapter;
+import tools.redstone.picasso.adapter.DynamicAdapterRegistry;
+import tools.redstone.picasso.usage.Abstraction;
+import tools.redstone.picasso.util.classpath.ClassBytesSource;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of adapting a handle to its abstraction through
+ * each adapter path, against constructing the implementation by hand.
+ * The handles cycle through one, two or eight handle classes.
+ *
+ * Run with {@code -prof gc} for the allocation per adaptation, which is
+ * enabled for all benchmarks by the build.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class AdapterBenchmark {
+
+    /** The same benchmarks contended by four threads */
+    @Threads(4)
+    public static class Contended extends AdapterBenchmark { }
+
+    /* --------------------------------------------------- */
+
+    public interface Entity extends Abstraction { int id(); }
+
+    public static abstract class Handle { public abstract int id(); }
+    public static final class Handle0 extends Handle { public int id() { return 0; } }
+    public static final class Handle1 extends Handle { public int id() { return 1; } }
+    public static final class Handle2 extends Handle { public int id() { return 2; } }
+    public static final class Handle3 extends Handle { public int id() { return 3; } }
+    public static final class Handle4 extends Handle { public int id() { return 4; } }
+    public static final class Handle5 extends Handle { public int id() { return 5; } }
+    public static final class Handle6 extends Handle { public int id() { return 6; } }
+    public static final class Handle7 extends Handle { public int id() { return 7; } }
+
+    public static class EntityImpl extends HandleAbstraction<Handle> implements Entity {
+        public EntityImpl(Handle handle) {
+            super(handle);
+        }
+
+        @Override
+        public int id() {
+            return handle.id();
+        }
+    }
+
+    /** Implemented by the subject, which is loaded by the provider */
+    public interface Converter {
+        Entity convert(Cursor cursor, Handle[] handles);
+    }
+
+    /** The class whose adapt call is transformed, adapting a returned value like an implementation would */
+    public static class Subject implements Abstraction, Converter {
+        @Override
+        public Entity convert(Cursor cursor, Handle[] handles) {
+            return adapt(cursor.next(handles));
+        }
+    }
+
+    /* --------------------------------------------------- */
+
+    static final int HANDLE_COUNT = 1024;                                       // The amount of handles cycled through, a power of two
+    static final String SUBJECT_NAME = "bench.picasso.AdapterBenchmark$Subject"; // Not referenced as a class literal, which would load it in the parent loader
+
+    @Param({ "mono", "poly", "mega" })
+    String receivers;
+
+    Handle[] handles;
+    DynamicAdapterRegistry registry;
+    Converter subject;
+
+    /** The position in the handles of each thread */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+
+        public Handle next(Handle[] handles) {
+            return handles[index++ & (HANDLE_COUNT - 1)];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int classCount = switch (receivers) {
+            case "mono" -> 1;
+            case "poly" -> 2;
+            default -> 8;
+        };
+
+        SplittableRandom random = new SplittableRandom(42);
+        Handle[] kinds = { new Handle0(), new Handle1(), new Handle2(), new Handle3(), new Handle4(), new Handle5(), new Handle6(), new Handle7() };
+        handles = new Handle[HANDLE_COUNT];
+        for (int i = 0; i < HANDLE_COUNT; i++)
+            handles[i] = kinds[random.nextInt(classCount)];
+
+        AbstractionManager.getInstance().registerImpl(EntityImpl.class);
+        registry = new DynamicAdapterRegistry();
+        registry.registerHandleAdapter(Handle.class, Entity.class);
+
+        AbstractionProvider provider = BenchProviders.create("default", registry,
+                ClassBytesSource.ofClassLoader(AdapterBenchmark.class.getClassLoader()), SUBJECT_NAME);
+        subject = (Converter) provider.findClass(SUBJECT_NAME).getConstructor().newInstance();
+
+        // resolve the functions of all handle classes up front, the
+        // registry cache is not written to while measuring
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < HANDLE_COUNT; i++)
+            subject.convert(cursor, handles);
+        for (Handle handle : kinds)
+            registry.findAdapterFunction(handle.getClass(), Entity.class);
+    }
+
+    /** The adapt call transformed into a call of the lazy adapter function */
+    @Benchmark
+    public Entity transformedAdapt(Cursor cursor) {
+        return subject.convert(cursor, handles);
+    }
+
+    /** Looking up the adapter function in the registry for each value */
+    @Benchmark
+    public Object registryFunction(Cursor cursor) {
+        Handle handle = cursor.next(handles);
+        return registry.findAdapterFunction(handle.getClass(), Entity.class).adapt(handle);
+    }
+
+    /** Creating a handle adapter, which resolves the implementation on first use */
+    @Benchmark
+    public Entity handleAdapterFirstUse(Cursor cursor) {
+        return Adapter.forHandleAbstraction(Handle.class, Entity.class).toB(cursor.next(handles));
+    }
+
+    /** The baseline, constructing the implementation directly */
+    @Benchmark
+    public Entity handWritten(Cursor cursor) {
+        return new EntityImpl(cursor.next(handles));
+    }
+
+}
@@ -0,0 +1,25 @@
+package bench.picasso;
+
+import tools.redstone.picasso.usage.Abstraction;
+
+/** The abstraction referenced by the generated corpus, even methods are implemented */
+public interface BenchAbstraction extends Abstraction {
+    int METHOD_COUNT = 16;
+
+    default String a0() { return unimplemented(); }
+    default String a1() { return unimplemented(); }
+    default String a2() { return unimplemented(); }
+    default String a3() { return unimplemented(); }
+    default String a4() { return unimplemented(); }
+    default String a5() { return unimplemented(); }
+    default String a6() { return unimplemented(); }
+    default String a7() { return unimplemented(); }
+    default String a8() { return unimplemented(); }
+    default String a9() { return unimplemented(); }
+    default String a10() { return unimplemented(); }
+    default String a11() { return unimplemented(); }
+    default String a12() { return unimplemented(); }
+    default String a13() { return unimplemented(); }
+    default String a14() { return unimplemented(); }
+    default String a15() { return unimplemented(); }
+}
@@ -0,0 +1,13 @@
+package bench.picasso;
+
+/** Implements the even methods of {@link BenchAbstraction} */
+public class BenchAbstractionImpl implements BenchAbstraction {
+    @Override public String a0() { return "0"; }
+    @Override public String a2() { return "2"; }
+    @Override public String a4() { return "4"; }
+    @Override public String a6() { return "6"; }
+    @Override public String a8() { return "8"; }
+    @Override public String a10() { return "10"; }
+    @Override public String a12() { return "12"; }
+    @Override public String a14() { return "14"; }
+}
@@ -0,0 +1,59 @@
+package bench.picasso;
+
+import tools.redstone.picasso.AbstractionManager;
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.adapter.AdapterRegistry;
+import tools.redstone.picasso.adapter.DynamicAdapterRegistry;
+import tools.redstone.picasso.usage.Abstraction;
+import tools.redstone.picasso.util.classpath.ClassBytesSource;
+
+/**
+ * Creates the providers the benchmarks load through.
+ */
+public final class BenchProviders {
+
+    private BenchProviders() { }
+
+    static {
+        AbstractionManager.getInstance().registerImpl(BenchAbstractionImpl.class);
+    }
+
+    /**
+     * Create a provider transforming the classes in the given package.
+     *
+     * @param hookSet The hooks, {@code minimal} for only dependency and
+     *                implementation checks or {@code default} for the hooks
+     *                of {@link AbstractionManager#createDefaultProvider}.
+     * @param source The source of the class bytes.
+     * @param packageName The package of the classes to transform.
+     * @return The provider.
+     */
+    public static AbstractionProvider create(String hookSet, ClassBytesSource source, String packageName) {
+        return create(hookSet, new DynamicAdapterRegistry(), source, packageName + ".");
+    }
+
+    /**
+     * Create a provider transforming the classes whose names start
+     * with the given prefix, adapting with the given registry.
+     *
+     * @param hookSet The hooks, see {@link #create(String, ClassBytesSource, String)}.
+     * @param adapterRegistry The adapter registry of the default hooks.
+     * @param source The source of the class bytes.
+     * @param classNamePrefix The prefix of the names of the classes to transform.
+     * @return The provider.
+     */
+    public static AbstractionProvider create(String hookSet, AdapterRegistry adapterRegistry, ClassBytesSource source, String classNamePrefix) {
+        AbstractionProvider provider = switch (hookSet) {
+            case "minimal" -> new AbstractionProvider(AbstractionManager.getInstance())
+                    .addAnalysisHook(AbstractionProvider.checkDependenciesForInterface(Abstraction.class, false))
+                    .addAnalysisHook(AbstractionProvider.checkForExplicitImplementation(Abstraction.class));
+            case "default" -> AbstractionManager.getInstance().createDefaultProvider(adapterRegistry);
+            default -> throw new IllegalArgumentException("Unknown hook set " + hookSet);
+        };
+
+        return provider
+                .setClassBytesSource(source)
+                .setClassAuditPredicate(name -> name.startsWith(classNamePrefix));
+    }
+
+}
@@ -0,0 +1,82 @@
+package bench.picasso;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.metrics.ProviderMetrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the classes per second loaded through
+ * {@link AbstractionProvider#findClass(String)}, every invocation loads
+ * the whole corpus through a new provider.
+ *
+ * The time of each phase is reported by the auxiliary counters in
+ * microseconds summed over the iteration, divide by {@code classes}
+ * for the time per class.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassLoadBenchmark {
+
+    static final int CLASS_COUNT = 256;
+
+    @Param({ "4", "32" })
+    int methodsPerClass;
+
+    @Param({ "1", "8" })
+    int referencesPerMethod;
+
+    @Param({ "minimal", "default" })
+    String hookSet;
+
+    SyntheticCorpus corpus;
+    List<String> classNames;
+
+    /** The time spent per phase, from the metrics of the providers */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Phases {
+        public double readMicros;
+        public double analyzeMicros;
+        public double writeMicros;
+        public double defineMicros;
+        public long classes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            readMicros = analyzeMicros = writeMicros = defineMicros = 0;
+            classes = 0;
+        }
+
+        void add(ProviderMetrics metrics, int classCount) {
+            readMicros += metrics.getReadTime().getTotalNanos() / 1000d;
+            analyzeMicros += metrics.getAnalyzeTime().getTotalNanos() / 1000d;
+            writeMicros += metrics.getWriteTime().getTotalNanos() / 1000d;
+            defineMicros += metrics.getDefineTime().getTotalNanos() / 1000d;
+            classes += classCount;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generate() {
+        corpus = SyntheticCorpus.generate(CLASS_COUNT, methodsPerClass, referencesPerMethod);
+        classNames = corpus.classNames();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLASS_COUNT)
+    public void findClass(Phases phases, Blackhole blackhole) {
+        AbstractionProvider provider = BenchProviders.create(hookSet, corpus, SyntheticCorpus.PACKAGE);
+        for (String name : classNames)
+            blackhole.consume(provider.findClass(name));
+        phases.add(provider.getMetrics(), CLASS_COUNT);
+    }
+
+}
@@ -0,0 +1,201 @@
+package bench.picasso;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jol.vm.VM;
+import tools.redstone.picasso.AbstractionManager;
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.analysis.ClassAnalysisHook;
+import tools.redstone.picasso.analysis.ClassDependencyAnalyzer;
+import tools.redstone.picasso.analysis.ReferenceInfo;
+import tools.redstone.picasso.metrics.ProviderMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the heap retained by the analysis state of a provider by
+ * walking its object graphs, and measures the heap and metaspace in use.
+ *
+ * Every object is counted once, in the first bucket it is reached from.
+ * Class nodes and reference infos are counted in buckets of their own
+ * wherever they are reached. The size of each object is taken from the
+ * running JVM through JOL, so it reflects the actual header, reference
+ * and alignment sizes. The internals of JDK collections and strings are
+ * only walked if their packages are opened to this class, which the
+ * benchmarks do, otherwise only their shallow size is counted.
+ */
+final class Footprint {
+
+    static final String CLASS_NODES = "classNodes";
+    static final String REFERENCE_INFOS = "referenceInfos";
+
+    final Map<String, Long> bytes = new LinkedHashMap<>();                      // The measured bytes by bucket
+    final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>()); // The objects counted so far
+    long referenceInfoCount;                                                    // The amount of reference infos counted
+
+    static final Map<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();   // The instance fields by class, readable ones only if walked
+
+    /**
+     * Measure the heap retained by the analysis state of the given
+     * provider, in the buckets {@code analyzerMap}, {@code refAnalysisMap},
+     * {@code implementedCache}, {@link #CLASS_NODES} and {@link #REFERENCE_INFOS}.
+     *
+     * @param provider The provider.
+     * @return The footprint.
+     */
+    public static Footprint ofProvider(AbstractionProvider provider) {
+        // the reference analyses point back to their analyzers,
+        // which are only counted from the analyzer map
+        Footprint footprint = new Footprint();
+        footprint.walk("implementedCache", providerField(provider, "implementedCache"), ClassDependencyAnalyzer.class);
+        footprint.walk("refAnalysisMap", providerField(provider, "refAnalysisMap"), ClassDependencyAnalyzer.class);
+        footprint.walk("analyzerMap", providerField(provider, "analyzerMap"), null);
+        return footprint;
+    }
+
+    // Read the given package private field of the provider
+    static Object providerField(AbstractionProvider provider, String name) {
+        try {
+            Field field = AbstractionProvider.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(provider);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not read provider field " + name, e);
+        }
+    }
+
+    /** Get the measured bytes of the given bucket */
+    public long getBytes(String bucket) {
+        return bytes.getOrDefault(bucket, 0L);
+    }
+
+    /** Get the measured bytes of all buckets */
+    public long getTotalBytes() {
+        long total = 0;
+        for (long b : bytes.values())
+            total += b;
+        return total;
+    }
+
+    public long getReferenceInfoCount() {
+        return referenceInfoCount;
+    }
+
+    // Count the graph of the given root in the given bucket, excluding
+    // instances of the given class, iteratively as the graphs can be deep
+    void walk(String bucket, Object root, Class<?> excluded) {
+        ArrayDeque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[] { root, bucket });
+        while (!stack.isEmpty()) {
+            Object[] entry = stack.pop();
+            Object obj = entry[0];
+            if (obj == null || isBoundary(obj) || (excluded != null && excluded.isInstance(obj)) || !visited.add(obj))
+                continue;
+
+            String b = (String) entry[1];
+            if (obj instanceof ClassNode) b = CLASS_NODES;
+            else if (obj instanceof ReferenceInfo) {
+                b = REFERENCE_INFOS;
+                referenceInfoCount++;
+            }
+
+            bytes.merge(b, VM.current().sizeOf(obj), Long::sum);
+            for (Object child : children(obj))
+                stack.push(new Object[] { child, b });
+        }
+    }
+
+    // Whether the given object is shared state of the provider
+    // or the runtime which is not attributed to analysis
+    static boolean isBoundary(Object obj) {
+        return obj instanceof Class<?> || obj instanceof ClassLoader || obj instanceof Thread ||
+                obj instanceof AbstractionProvider || obj instanceof AbstractionManager ||
+                obj instanceof ProviderMetrics || obj instanceof ClassAnalysisHook ||
+                obj instanceof Enum<?>;
+    }
+
+    // Get the objects referenced by the given object
+    static List<Object> children(Object obj) {
+        List<Object> children = new ArrayList<>();
+        Class<?> klass = obj.getClass();
+        if (klass.isArray()) {
+            if (!klass.getComponentType().isPrimitive())
+                for (int i = 0, n = Array.getLength(obj); i < n; i++)
+                    children.add(Array.get(obj, i));
+        } else if (obj instanceof Map<?, ?> map && isOpaque(klass)) {
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                children.add(e.getKey());
+                children.add(e.getValue());
+            }
+        } else if (obj instanceof Collection<?> collection && isOpaque(klass)) {
+            children.addAll(collection);
+        } else if (!isOpaque(klass)) {
+            for (Field field : fields(klass)) {
+                try {
+                    children.add(field.get(obj));
+                } catch (IllegalAccessException ignored) { }
+            }
+        }
+
+        return children;
+    }
+
+    // Get the readable instance fields of the given class
+    static List<Field> fields(Class<?> klass) {
+        return FIELDS.computeIfAbsent(klass, k -> {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = k; c != null && !isOpaque(c); c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive())
+                        continue;
+                    try {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    } catch (RuntimeException ignored) { }
+                }
+            }
+
+            return fields;
+        });
+    }
+
+    // Whether the fields of the given class can not be read, which is the
+    // case for the classes of the JDK modules unless their package is opened
+    static boolean isOpaque(Class<?> klass) {
+        return !klass.getModule().isOpen(klass.getPackageName(), Footprint.class.getModule());
+    }
+
+    /* --------------------------------------------------- */
+
+    /**
+     * Get the used heap after collecting garbage, the collection is
+     * repeated as a single one may not free everything.
+     */
+    public static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /** Get the used metaspace, or 0 if there is no metaspace pool */
+    public static long usedMetaspace() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getName().equals("Metaspace"))
+                return pool.getUsage().getUsed();
+        return 0;
+    }
+
+}
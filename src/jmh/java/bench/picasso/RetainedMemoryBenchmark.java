@@ -0,0 +1,108 @@
+package bench.picasso;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tools.redstone.picasso.AbstractionProvider;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap and metaspace retained per class by a provider which
+ * loaded a {@link SyntheticCodebase}, and fails the run if the retained
+ * heap per class, as measured after garbage collection, exceeds
+ * {@code budgetBytesPerClass}. The build only fails on it when run with
+ * {@code -Pjmh.failOnError=true}.
+ *
+ * The auxiliary counters report the retained heap and its split over the
+ * analysis state as walked by {@link Footprint}, all in bytes per class.
+ * The score is the time to load the codebase.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {
+        // let the footprint walk the internals of JDK collections and strings
+        "--add-opens=java.base/java.lang=ALL-UNNAMED",
+        "--add-opens=java.base/java.util=ALL-UNNAMED",
+        "--add-opens=java.base/java.util.concurrent=ALL-UNNAMED"
+})
+@State(Scope.Benchmark)
+public class RetainedMemoryBenchmark {
+
+    @Param({ "42" })
+    long seed;
+
+    @Param({ "1000" })
+    int classCount;
+
+    @Param({ "false", "true" })
+    boolean releaseAnalyzers;
+
+    SyntheticCodebase codebase;
+    List<String> classNames;
+
+    /** The memory retained per class by the provider of the invocation */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        @Param({ "98304" })
+        long budgetBytesPerClass; // The budget of the retained heap per class
+
+        public double heapBytes;
+        public double metaspaceBytes;
+        public double analyzerMapBytes;
+        public double refAnalysisMapBytes;
+        public double implementedCacheBytes;
+        public double classNodeBytes;
+        public double referenceInfoBytes;
+        public double referenceInfos;
+
+        AbstractionProvider provider; // The provider loaded through, kept until measured
+        int classes;                  // The amount of classes loaded
+        long baselineHeap;            // The used heap before loading
+        long baselineMetaspace;       // The used metaspace before loading
+
+        @Setup(Level.Invocation)
+        public void baseline() {
+            provider = null;
+            baselineHeap = Footprint.usedHeapAfterGc();
+            baselineMetaspace = Footprint.usedMetaspace();
+        }
+
+        @TearDown(Level.Invocation)
+        public void measure() {
+            heapBytes = (double) (Footprint.usedHeapAfterGc() - baselineHeap) / classes;
+            metaspaceBytes = (double) (Footprint.usedMetaspace() - baselineMetaspace) / classes;
+
+            Footprint footprint = Footprint.ofProvider(provider);
+            analyzerMapBytes = (double) footprint.getBytes("analyzerMap") / classes;
+            refAnalysisMapBytes = (double) footprint.getBytes("refAnalysisMap") / classes;
+            implementedCacheBytes = (double) footprint.getBytes("implementedCache") / classes;
+            classNodeBytes = (double) footprint.getBytes(Footprint.CLASS_NODES) / classes;
+            referenceInfoBytes = (double) footprint.getBytes(Footprint.REFERENCE_INFOS) / classes;
+            referenceInfos = (double) footprint.getReferenceInfoCount() / classes;
+            provider = null;
+
+            if (heapBytes > budgetBytesPerClass)
+                throw new IllegalStateException("Retained " + (long) heapBytes + " bytes of heap per class, the budget is " + budgetBytesPerClass);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generate() {
+        codebase = SyntheticCodebase.generate(seed, classCount, 64, 8);
+        classNames = codebase.featureClassNames();
+    }
+
+    @Benchmark
+    public void loadAll(Retained retained, Blackhole blackhole) {
+        AbstractionProvider provider = codebase.createProvider().releaseAnalyzers(releaseAnalyzers);
+        for (String name : classNames)
+            blackhole.consume(provider.findClass(name));
+        retained.provider = provider;
+        retained.classes = classNames.size();
+    }
+
+}
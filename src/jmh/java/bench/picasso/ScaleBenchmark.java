@@ -0,0 +1,83 @@
+package bench.picasso;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tools.redstone.picasso.AbstractionProvider;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a whole {@link SyntheticCodebase} through a new
+ * provider, every invocation loads all feature classes once.
+ *
+ * The auxiliary counters report the analysis time and the heap retained
+ * by the provider per feature class, which should stay flat as
+ * {@code classCount} and {@code callDepth} grow. Growth points at
+ * super-linear analysis, like propagation through deep or recursive
+ * call graphs.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScaleBenchmark {
+
+    @Param({ "42" })
+    long seed;
+
+    @Param({ "1000", "4000" })
+    int classCount;
+
+    @Param({ "32", "256" })
+    int abstractionCount;
+
+    @Param({ "8", "32" })
+    int callDepth;
+
+    SyntheticCodebase codebase;
+    List<String> classNames;
+
+    /** The cost per class of the provider of the invocation */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PerClass {
+        public double analyzeMicros;
+        public double retainedBytes;
+
+        AbstractionProvider provider; // The provider loaded through, kept until measured
+        int classes;                  // The amount of classes loaded
+        long baseline;                // The used heap before loading
+
+        @Setup(Level.Invocation)
+        public void baseline() {
+            provider = null;
+            baseline = Footprint.usedHeapAfterGc();
+        }
+
+        @TearDown(Level.Invocation)
+        public void measure() {
+            analyzeMicros = provider.getMetrics().getAnalyzeTime().getTotalNanos() / 1000d / classes;
+            retainedBytes = (double) (Footprint.usedHeapAfterGc() - baseline) / classes;
+            provider = null;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generate() {
+        codebase = SyntheticCodebase.generate(seed, classCount, abstractionCount, callDepth);
+        classNames = codebase.featureClassNames();
+    }
+
+    @Benchmark
+    public void loadAll(PerClass perClass, Blackhole blackhole) {
+        AbstractionProvider provider = codebase.createProvider();
+        for (String name : classNames)
+            blackhole.consume(provider.findClass(name));
+        perClass.provider = provider;
+        perClass.classes = classNames.size();
+    }
+
+}
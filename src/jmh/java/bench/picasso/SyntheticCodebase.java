@@ -0,0 +1,279 @@
+package bench.picasso;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import tools.redstone.picasso.AbstractionManager;
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.analysis.ClassAnalysisHook;
+import tools.redstone.picasso.analysis.ReferenceInfo;
+import tools.redstone.picasso.usage.Abstraction;
+import tools.redstone.picasso.usage.Usage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A codebase generated in memory from a seed, shaped like a feature
+ * codebase at scale. The same seed and sizes always generate the same
+ * class bytes.
+ *
+ * The feature classes call the methods of many abstractions and each
+ * other in chains of up to {@code callDepth} classes, with direct and
+ * mutual recursion, and some methods pass lambdas using
+ * {@code optionally} to {@code either}. The abstractions are only
+ * defined in memory, so whether their methods are implemented is
+ * answered by {@link #implementationHook()} instead of registered
+ * implementation classes.
+ */
+public final class SyntheticCodebase {
+
+    public static final String PACKAGE = "bench.picasso.codebase";
+
+    static final int METHODS_PER_CLASS = 8;       // The amount of methods per feature class
+    static final int METHODS_PER_ABSTRACTION = 8; // The amount of methods per abstraction
+    static final int CALL_WINDOW = 8;             // The amount of following classes a method may call into
+
+    static final String PREFIX = PACKAGE.replace('.', '/') + "/";
+    static final String NAME_Apis = PREFIX + "Apis";
+    static final String NAME_Abstraction = Type.getInternalName(Abstraction.class);
+    static final String NAME_Usage = Type.getInternalName(Usage.class);
+    static final String DESC_Method = "(I)I";
+    static final String DESC_ApiMethod = "(I)Ljava/lang/Object;";
+    static final String DESC_Lambda = "(I)Ljava/lang/Object;";
+    static final Handle HANDLE_metafactory = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;" +
+            "Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;", false);
+
+    final SyntheticCorpus corpus = new SyntheticCorpus();            // The class bytes
+    final List<String> featureClassNames = new ArrayList<>();         // The names of the feature classes
+    final Map<String, boolean[]> implemented = new HashMap<>();       // Whether each method is implemented by abstraction class name
+
+    /**
+     * Generate a codebase.
+     *
+     * @param seed The seed.
+     * @param classCount The amount of feature classes.
+     * @param abstractionCount The amount of abstractions.
+     * @param callDepth The length of the call chains between feature classes.
+     * @return The codebase.
+     */
+    public static SyntheticCodebase generate(long seed, int classCount, int abstractionCount, int callDepth) {
+        SyntheticCodebase codebase = new SyntheticCodebase();
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // abstractions, of which three in four methods are implemented
+        ClassWriter apis = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        apis.visit(Opcodes.V16, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, NAME_Apis, null, "java/lang/Object", null);
+        for (int k = 0; k < abstractionCount; k++) {
+            String internalName = apiName(k);
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(Opcodes.V16, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, internalName, null, "java/lang/Object", new String[] { NAME_Abstraction });
+            boolean[] methods = new boolean[METHODS_PER_ABSTRACTION];
+            for (int j = 0; j < METHODS_PER_ABSTRACTION; j++) {
+                cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "f" + j, DESC_ApiMethod, null, null).visitEnd();
+                methods[j] = random.nextInt(4) != 0;
+            }
+
+            cw.visitEnd();
+            codebase.put(internalName, cw.toByteArray());
+            codebase.implemented.put(internalName.replace('/', '.'), methods);
+            apis.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "api" + k, "L" + internalName + ";", null, null).visitEnd();
+        }
+
+        visitConstructor(apis, NAME_Apis);
+        apis.visitEnd();
+        codebase.put(NAME_Apis, apis.toByteArray());
+
+        // feature classes, calling into the following
+        // classes of the same chain
+        for (int i = 0; i < classCount; i++) {
+            String internalName = PREFIX + "Feature" + i;
+            int chainStart = i - i % callDepth;
+            int chainEnd = Math.min(chainStart + callDepth, classCount);
+
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(Opcodes.V16, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+            visitConstructor(cw, internalName);
+
+            for (int j = 0; j < METHODS_PER_CLASS; j++) {
+                MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m" + j, DESC_Method, null, null);
+                Label start = new Label(), end = new Label();
+                mv.visitCode();
+                mv.visitLabel(start);
+
+                for (int r = 1 + random.nextInt(4); r > 0; r--)
+                    visitApiCall(mv, random.nextInt(abstractionCount), random.nextInt(METHODS_PER_ABSTRACTION));
+
+                if (i + 1 < chainEnd) {
+                    for (int c = 1 + random.nextInt(2); c > 0; c--)
+                        visitFeatureCall(mv, i + 1 + random.nextInt(Math.min(CALL_WINDOW, chainEnd - i - 1)), random.nextInt(METHODS_PER_CLASS));
+                }
+
+                // direct recursion or a cycle through
+                // an earlier class of the chain
+                if (random.nextInt(8) == 0) {
+                    if (i == chainStart || random.nextBoolean()) visitFeatureCall(mv, i, j);
+                    else visitFeatureCall(mv, chainStart + random.nextInt(i - chainStart), random.nextInt(METHODS_PER_CLASS));
+                }
+
+                // either(() -> optionally(() -> api.f(x)).orElse(null), () -> api.f(x))
+                if (random.nextInt(4) == 0) {
+                    String lambdaName = "lambda$m" + j + "$";
+                    mv.visitInsn(Opcodes.ICONST_2);
+                    mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/util/function/Supplier");
+                    for (int l = 0; l < 2; l++) {
+                        mv.visitInsn(Opcodes.DUP);
+                        mv.visitInsn(Opcodes.ICONST_0 + l);
+                        visitSupplier(mv, internalName, lambdaName + l);
+                        mv.visitInsn(Opcodes.AASTORE);
+                    }
+
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, NAME_Usage, "either", "([Ljava/util/function/Supplier;)Ljava/lang/Object;", false);
+                    mv.visitInsn(Opcodes.POP);
+
+                    Label optionalStart = new Label();
+                    MethodVisitor optional = visitLambda(cw, lambdaName + 0, optionalStart);
+                    visitSupplier(optional, internalName, lambdaName + 2);
+                    optional.visitMethodInsn(Opcodes.INVOKESTATIC, NAME_Usage, "optionally", "(Ljava/util/function/Supplier;)Ljava/util/Optional;", false);
+                    optional.visitInsn(Opcodes.ACONST_NULL);
+                    optional.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/util/Optional", "orElse", "(Ljava/lang/Object;)Ljava/lang/Object;", false);
+                    visitLambdaEnd(optional, optionalStart);
+
+                    for (int l = 1; l < 3; l++) {
+                        int k = random.nextInt(abstractionCount), f = random.nextInt(METHODS_PER_ABSTRACTION);
+                        Label blockStart = new Label();
+                        MethodVisitor block = visitLambda(cw, lambdaName + l, blockStart);
+                        block.visitFieldInsn(Opcodes.GETSTATIC, NAME_Apis, "api" + k, "L" + apiName(k) + ";");
+                        block.visitVarInsn(Opcodes.ILOAD, 0);
+                        block.visitMethodInsn(Opcodes.INVOKEINTERFACE, apiName(k), "f" + f, DESC_ApiMethod, true);
+                        visitLambdaEnd(block, blockStart);
+                    }
+                }
+
+                mv.visitVarInsn(Opcodes.ILOAD, 0);
+                mv.visitInsn(Opcodes.IRETURN);
+                mv.visitLabel(end);
+                mv.visitLocalVariable("x", "I", null, start, end, 0);
+                mv.visitMaxs(0, 0);
+                mv.visitEnd();
+            }
+
+            cw.visitEnd();
+            codebase.put(internalName, cw.toByteArray());
+            codebase.featureClassNames.add(internalName.replace('/', '.'));
+        }
+
+        return codebase;
+    }
+
+    // Get the internal name of the given abstraction
+    static String apiName(int k) {
+        return PREFIX + "Api" + k;
+    }
+
+    // Emit a no-args constructor
+    static void visitConstructor(ClassWriter cw, String internalName) {
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        Label start = new Label(), end = new Label();
+        init.visitCode();
+        init.visitLabel(start);
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitLabel(end);
+        init.visitLocalVariable("this", "L" + internalName + ";", null, start, end, 0);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+    }
+
+    // Emit api<k>.f<f>(x) discarding the result
+    static void visitApiCall(MethodVisitor mv, int k, int f) {
+        mv.visitFieldInsn(Opcodes.GETSTATIC, NAME_Apis, "api" + k, "L" + apiName(k) + ";");
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, apiName(k), "f" + f, DESC_ApiMethod, true);
+        mv.visitInsn(Opcodes.POP);
+    }
+
+    // Emit Feature<i>.m<j>(x) discarding the result
+    static void visitFeatureCall(MethodVisitor mv, int i, int j) {
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, PREFIX + "Feature" + i, "m" + j, DESC_Method, false);
+        mv.visitInsn(Opcodes.POP);
+    }
+
+    // Emit a supplier capturing x from the given lambda method
+    static void visitSupplier(MethodVisitor mv, String owner, String lambdaName) {
+        Type getType = Type.getMethodType("()Ljava/lang/Object;");
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitInvokeDynamicInsn("get", "(I)Ljava/util/function/Supplier;", HANDLE_metafactory,
+                getType, new Handle(Opcodes.H_INVOKESTATIC, owner, lambdaName, DESC_Lambda, false), getType);
+    }
+
+    // Begin a lambda method taking the captured x
+    static MethodVisitor visitLambda(ClassWriter cw, String name, Label start) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC, name, DESC_Lambda, null, null);
+        mv.visitCode();
+        mv.visitLabel(start);
+        return mv;
+    }
+
+    // Return the value on the stack and end the lambda method
+    static void visitLambdaEnd(MethodVisitor mv, Label start) {
+        Label end = new Label();
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitLabel(end);
+        mv.visitLocalVariable("x", "I", null, start, end, 0);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // Add the bytes of the given class
+    void put(String internalName, byte[] bytes) {
+        corpus.classes.put(internalName.replace('/', '.'), bytes);
+    }
+
+    /** Get the class bytes of the codebase, which falls back to the class path */
+    public SyntheticCorpus corpus() {
+        return corpus;
+    }
+
+    /** Get the names of the feature classes in generation order */
+    public List<String> featureClassNames() {
+        return featureClassNames;
+    }
+
+    /** Get the hook answering whether the methods of the generated abstractions are implemented */
+    public ClassAnalysisHook implementationHook() {
+        return new ClassAnalysisHook() {
+            @Override
+            public Boolean checkImplemented(AbstractionProvider provider, ReferenceInfo ref) {
+                boolean[] methods = implemented.get(ref.className());
+                if (methods == null || ref.isField())
+                    return null;
+                return methods[Integer.parseInt(ref.name().substring(1))];
+            }
+        };
+    }
+
+    /**
+     * Create a provider transforming the codebase, with the dependency
+     * checks for {@link Abstraction} and the implementation hook.
+     *
+     * @return The provider.
+     */
+    public AbstractionProvider createProvider() {
+        return new AbstractionProvider(AbstractionManager.getInstance())
+                .addAnalysisHook(AbstractionProvider.checkDependenciesForInterface(Abstraction.class, false))
+                .addAnalysisHook(implementationHook())
+                .setClassBytesSource(corpus)
+                .setClassAuditPredicate(name -> name.startsWith(PACKAGE + "."));
+    }
+
+}
@@ -0,0 +1,107 @@
+package bench.picasso;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import tools.redstone.picasso.util.classpath.ClassBytesSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classes referencing {@link BenchAbstraction} generated in memory, served
+ * as a class bytes source which falls back to the class path for all
+ * other classes. The classes carry local variable tables like classes
+ * compiled with debug information, which the analyzer relies on.
+ */
+public final class SyntheticCorpus implements ClassBytesSource {
+
+    public static final String PACKAGE = "bench.picasso.generated";
+
+    static final String NAME_BenchAbstraction = Type.getInternalName(BenchAbstraction.class);
+    static final String DESC_BenchAbstraction = Type.getDescriptor(BenchAbstraction.class);
+
+    final Map<String, byte[]> classes = new LinkedHashMap<>();                                            // The class bytes by class name
+    final ClassBytesSource fallback = ClassBytesSource.ofClassLoader(SyntheticCorpus.class.getClassLoader()); // The source for all other classes
+
+    /**
+     * Generate a corpus of classes with the given amount of methods,
+     * which each call the given amount of abstraction methods.
+     *
+     * @param classCount The amount of classes.
+     * @param methodsPerClass The amount of methods per class.
+     * @param referencesPerMethod The amount of abstraction calls per method.
+     * @return The corpus.
+     */
+    public static SyntheticCorpus generate(int classCount, int methodsPerClass, int referencesPerMethod) {
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        for (int i = 0; i < classCount; i++) {
+            String internalName = PACKAGE.replace('.', '/') + "/C" + i;
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(Opcodes.V16, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+
+            MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+            Label initStart = new Label(), initEnd = new Label();
+            init.visitCode();
+            init.visitLabel(initStart);
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            init.visitInsn(Opcodes.RETURN);
+            init.visitLabel(initEnd);
+            init.visitLocalVariable("this", "L" + internalName + ";", null, initStart, initEnd, 0);
+            init.visitMaxs(0, 0);
+            init.visitEnd();
+
+            for (int j = 0; j < methodsPerClass; j++) {
+                MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "m" + j, "(" + DESC_BenchAbstraction + ")Ljava/lang/String;", null, null);
+                Label start = new Label(), end = new Label();
+                mv.visitCode();
+                mv.visitLabel(start);
+                for (int k = 0; k < referencesPerMethod; k++) {
+                    mv.visitVarInsn(Opcodes.ALOAD, 1);
+                    mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, NAME_BenchAbstraction, "a" + ((i * 7 + j * 3 + k) % BenchAbstraction.METHOD_COUNT), "()Ljava/lang/String;", true);
+                    mv.visitInsn(Opcodes.POP);
+                }
+
+                mv.visitLdcInsn("m" + j);
+                mv.visitInsn(Opcodes.ARETURN);
+                mv.visitLabel(end);
+                mv.visitLocalVariable("this", "L" + internalName + ";", null, start, end, 0);
+                mv.visitLocalVariable("a", DESC_BenchAbstraction, null, start, end, 1);
+                mv.visitMaxs(0, 0);
+                mv.visitEnd();
+            }
+
+            cw.visitEnd();
+            corpus.classes.put(internalName.replace('/', '.'), cw.toByteArray());
+        }
+
+        return corpus;
+    }
+
+    /** Get the names of all generated classes in generation order */
+    public List<String> classNames() {
+        return new ArrayList<>(classes.keySet());
+    }
+
+    /** Get the total size of all generated class files */
+    public long totalBytes() {
+        long bytes = 0;
+        for (byte[] b : classes.values())
+            bytes += b.length;
+        return bytes;
+    }
+
+    @Override
+    public ByteBuffer getClassBytes(String className) throws IOException {
+        byte[] bytes = classes.get(className.replace('/', '.'));
+        return bytes != null ? ByteBuffer.wrap(bytes) : fallback.getClassBytes(className);
+    }
+
+}
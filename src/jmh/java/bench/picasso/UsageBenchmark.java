@@ -0,0 +1,169 @@
+package bench.picasso;
+
+import org.openjdk.jmh.annotations.*;
+import tools.redstone.picasso.AbstractionManager;
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.adapter.DynamicAdapterRegistry;
+import tools.redstone.picasso.usage.Abstraction;
+import tools.redstone.picasso.usage.Usage;
+import tools.redstone.picasso.util.classpath.ClassBytesSource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the transformed {@link Usage} directives against
+ * calling the abstraction directly, with the dependencies of the directives
+ * implemented or not. In the unimplemented state {@code either} falls back
+ * to its second block, which is implemented.
+ *
+ * The input is read from a non-final state field and every result is
+ * returned, the setup checks the results depend on the input so the
+ * directives can not be folded into constants.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UsageBenchmark {
+
+    public interface Source extends Abstraction {
+        default int value(int x) { return unimplemented(); }
+        default int other(int x) { return unimplemented(); }
+        default int missing(int x) { return unimplemented(); }
+    }
+
+    public static class SourceImpl implements Source {
+        @Override
+        public int value(int x) {
+            return x * 31 + 7;
+        }
+
+        @Override
+        public int other(int x) {
+            return x ^ 0x5bd1e995;
+        }
+    }
+
+    /** Implemented by the subjects, which are loaded by the provider */
+    public interface Directives {
+        int optionallySupplier(Source source, int x);
+        int optionallyRunnable(Source source, int x);
+        int either(Source source, int x);
+        int direct(Source source, int x);
+    }
+
+    /** The directives on implemented methods */
+    public static class Implemented implements Directives {
+        int sink; // Written by the runnable blocks
+
+        @Override
+        public int optionallySupplier(Source source, int x) {
+            return Usage.optionally(() -> source.value(x)).orElse(0);
+        }
+
+        @Override
+        public int optionallyRunnable(Source source, int x) {
+            sink = 0;
+            Usage.optionally(() -> { sink = source.value(x); });
+            return sink;
+        }
+
+        @Override
+        public int either(Source source, int x) {
+            return Usage.either(() -> source.value(x), () -> source.other(x));
+        }
+
+        @Override
+        public int direct(Source source, int x) {
+            return source.value(x);
+        }
+    }
+
+    /** The directives on an unimplemented method */
+    public static class Unimplemented implements Directives {
+        int sink; // Written by the runnable blocks
+
+        @Override
+        public int optionallySupplier(Source source, int x) {
+            return Usage.optionally(() -> source.missing(x)).orElse(0);
+        }
+
+        @Override
+        public int optionallyRunnable(Source source, int x) {
+            sink = 0;
+            Usage.optionally(() -> { sink = source.missing(x); });
+            return sink;
+        }
+
+        @Override
+        public int either(Source source, int x) {
+            return Usage.either(() -> source.missing(x), () -> source.value(x));
+        }
+
+        @Override
+        public int direct(Source source, int x) {
+            return source.value(x);
+        }
+    }
+
+    /* --------------------------------------------------- */
+
+    static final String PREFIX = "bench.picasso.UsageBenchmark$"; // The subjects are not referenced as class literals, which would load them in the parent loader
+
+    @Param({ "implemented", "unimplemented" })
+    String state;
+
+    Source source;
+    Directives subject;
+    int x = 17; // The input, not final so it is read on every invocation
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        AbstractionManager.getInstance().registerImpl(SourceImpl.class);
+        source = new SourceImpl();
+
+        String name = PREFIX + (state.equals("implemented") ? "Implemented" : "Unimplemented");
+        AbstractionProvider provider = BenchProviders.create("default", new DynamicAdapterRegistry(),
+                ClassBytesSource.ofClassLoader(UsageBenchmark.class.getClassLoader()), PREFIX);
+        subject = (Directives) provider.findClass(name).getConstructor().newInstance();
+
+        // check the directives were transformed and depend on the input
+        boolean implemented = state.equals("implemented");
+        for (int input : new int[] { 1, 2 }) {
+            check("optionallySupplier", subject.optionallySupplier(source, input), implemented ? source.value(input) : 0);
+            check("optionallyRunnable", subject.optionallyRunnable(source, input), implemented ? source.value(input) : 0);
+            check("either", subject.either(source, input), source.value(input));
+            check("direct", subject.direct(source, input), source.value(input));
+        }
+    }
+
+    // Fail the trial if a directive returned an unexpected result
+    static void check(String directive, int result, int expected) {
+        if (result != expected)
+            throw new IllegalStateException(directive + " returned " + result + ", expected " + expected);
+    }
+
+    @Benchmark
+    public int optionallySupplier() {
+        return subject.optionallySupplier(source, x);
+    }
+
+    @Benchmark
+    public int optionallyRunnable() {
+        return subject.optionallyRunnable(source, x);
+    }
+
+    @Benchmark
+    public int either() {
+        return subject.either(source, x);
+    }
+
+    /** The baseline, calling the implemented method without a directive */
+    @Benchmark
+    public int direct() {
+        return subject.direct(source, x);
+    }
+
+}
@@ -4,7 +4,15 @@ import tools.redstone.picasso.adapter.AdapterAnalysisHook;
 import tools.redstone.picasso.adapter.AdapterRegistry;
 import tools.redstone.picasso.usage.Abstraction;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Manages abstractions and their implementations.
@@ -13,6 +21,10 @@ import java.util.*;
  * unlike the {@link AbstractionProvider} which can be instantiated
  * for specific use cases.
  *
+ * Registration is copy-on-write, so impls can be registered from any
+ * thread while lookups stay lock-free through a {@link ClassValue}
+ * whose entries are only valid for the registry they were computed from.
+ *
  * @author orbyfied
  */
 public class AbstractionManager {
@@ -23,9 +35,52 @@ public class AbstractionManager {
         return INSTANCE;
     }
 
-    final Map<Class<?>, Class<?>> implByBaseClass = new HashMap<>(); // The registered implementation classes by base class
-    final Set<Class<?>> registeredImplClasses = new HashSet<>();     // Set of all classes registerImpl() was called with
+    /** The path of the impl index resources written by the picasso annotation processor, shared with it */
+    public static final String IMPL_INDEX_RESOURCE = "META-INF/picasso/impls.idx";
+
+    /** An impl from an index which is loaded when its abstraction is first queried */
+    record IndexedImpl(String implClassName, Function<String, Class<?>> classLoader) { }
+
+    /** An implementation class registered for a base class, higher priorities are preferred */
+    public record RegisteredImpl(Class<?> implClass, int priority) { }
+
+    /** An immutable snapshot of the registered impls, every change publishes a new instance */
+    record Registry(Map<Class<?>, List<RegisteredImpl>> implsByBaseClass, Set<Class<?>> implClasses) { }
+
+    /** The preferred impl of a base class as computed from the given registry */
+    record CachedImpl(Registry registry, Class<?> implClass) { }
 
+    /** The cached impl lookup of a base class */
+    static final class ImplSlot {
+        volatile CachedImpl cached; // Stale once its registry is no longer the current one
+    }
+
+    volatile Registry registry = new Registry(Map.of(), Set.of());                                    // The current registry, replaced on every change
+    final Map<String, List<IndexedImpl>> indexedImplsByBaseName = new ConcurrentHashMap<>();          // The indexed, not yet loaded impls by base class name
+    final ThreadLocal<Set<String>> loadingIndexedImpls = ThreadLocal.withInitial(HashSet::new);       // The base class names whose indexed impls the current thread is loading
+
+    // The cached impl lookups by base class, publishing a new
+    // registry invalidates all of them with one volatile write
+    final ClassValue<ImplSlot> implSlots = new ClassValue<>() {
+        @Override
+        protected ImplSlot computeValue(Class<?> baseClass) {
+            return new ImplSlot();
+        }
+    };
+
+    // Get the preferred implementation class of the given
+    // base class in the current registry
+    private Class<?> preferredImpl(Class<?> baseClass) {
+        Registry current = registry;
+        ImplSlot slot = implSlots.get(baseClass);
+        CachedImpl cached = slot.cached;
+        if (cached == null || cached.registry() != current) {
+            List<RegisteredImpl> impls = current.implsByBaseClass().get(baseClass);
+            slot.cached = cached = new CachedImpl(current, impls != null ? impls.get(0).implClass() : null);
+        }
+
+        return cached.implClass();
+    }
 
     /**
      * Get the base abstraction class from the given interface.
@@ -64,22 +119,108 @@ public class AbstractionManager {
     }
 
     /**
-     * Registers the given implementation class.
+     * Registers the given implementation class with the default priority.
      *
      * Note that impl classes can be overwritten by different {@link AbstractionProvider}s.
      *
      * @param implClass The implementation.
      */
     public void registerImpl(Class<?> implClass) {
-        if (registeredImplClasses.contains(implClass))
+        registerImpl(implClass, 0);
+    }
+
+    /**
+     * Registers the given implementation class with the given priority. The
+     * impl with the highest priority is used for a base class, of impls with
+     * the same priority the last registered one is used.
+     *
+     * @param implClass The implementation.
+     * @param priority The priority.
+     */
+    public void registerImpl(Class<?> implClass, int priority) {
+        registerImpls(List.of(implClass), priority);
+    }
+
+    /**
+     * Registers the given implementation classes with the given priority as
+     * one change to the registry, in order. Classes which do not implement
+     * an abstraction are skipped without copying the registry.
+     *
+     * @param implClasses The implementations.
+     * @param priority The priority.
+     */
+    public void registerImpls(Collection<Class<?>> implClasses, int priority) {
+        Map<Class<?>, List<Class<?>>> abstractionsByImpl = new LinkedHashMap<>();
+        for (Class<?> implClass : implClasses) {
+            if (registry.implClasses().contains(implClass))
+                continue;
+            var abstractionsImplemented = getApplicableAbstractionClasses(implClass);
+            if (!abstractionsImplemented.isEmpty())
+                abstractionsByImpl.put(implClass, abstractionsImplemented);
+        }
+
+        if (abstractionsByImpl.isEmpty())
             return;
+        synchronized (this) {
+            Registry current = registry;
+            Set<Class<?>> registered = new HashSet<>(current.implClasses());
+            Map<Class<?>, List<RegisteredImpl>> changedImpls = new HashMap<>();
+            abstractionsByImpl.forEach((implClass, abstractionsImplemented) -> {
+                if (!registered.add(implClass))
+                    return;
+
+                for (Class<?> kl : abstractionsImplemented) {
+                    List<RegisteredImpl> impls = changedImpls.computeIfAbsent(kl, __ -> new ArrayList<>(current.implsByBaseClass().getOrDefault(kl, List.of())));
+                    int i = 0;
+                    while (i < impls.size() && impls.get(i).priority() > priority)
+                        i++;
+                    impls.add(i, new RegisteredImpl(implClass, priority));
+                }
+            });
 
-        var abstractionsImplemented = getApplicableAbstractionClasses(implClass);
-        for (Class<?> kl : abstractionsImplemented) {
-            implByBaseClass.put(kl, implClass);
+            if (changedImpls.isEmpty())
+                return;
+            Map<Class<?>, List<RegisteredImpl>> implsByBaseClass = new HashMap<>(current.implsByBaseClass());
+            changedImpls.forEach((kl, impls) -> implsByBaseClass.put(kl, List.copyOf(impls)));
+            registry = new Registry(Map.copyOf(implsByBaseClass), Set.copyOf(registered));
         }
+    }
 
-        registeredImplClasses.add(implClass);
+    /**
+     * Unregisters the given implementation class, the next impl by
+     * priority is used for its base classes afterwards.
+     *
+     * @param implClass The implementation.
+     */
+    public void unregisterImpl(Class<?> implClass) {
+        unregisterImpls(klass -> klass == implClass);
+    }
+
+    /**
+     * Unregisters all implementation classes defined by the given loader,
+     * for example before discarding the provider owning the loader.
+     *
+     * @param loader The class loader.
+     */
+    public void unregisterImpls(ClassLoader loader) {
+        unregisterImpls(klass -> klass.getClassLoader() == loader);
+    }
+
+    // Unregister all implementation classes matching the predicate
+    private synchronized void unregisterImpls(Predicate<Class<?>> predicate) {
+        Registry current = registry;
+        Set<Class<?>> implClasses = new HashSet<>(current.implClasses());
+        if (!implClasses.removeIf(predicate))
+            return;
+
+        Map<Class<?>, List<RegisteredImpl>> implsByBaseClass = new HashMap<>();
+        current.implsByBaseClass().forEach((baseClass, impls) -> {
+            List<RegisteredImpl> remaining = impls.stream().filter(impl -> !predicate.test(impl.implClass())).toList();
+            if (!remaining.isEmpty())
+                implsByBaseClass.put(baseClass, remaining);
+        });
+
+        registry = new Registry(Map.copyOf(implsByBaseClass), Set.copyOf(implClasses));
     }
 
     /**
@@ -89,7 +230,85 @@ public class AbstractionManager {
      * @return The implementation.
      */
     public Class<?> getImplByClass(Class<?> baseClass) {
-        return implByBaseClass.get(baseClass);
+        Class<?> implClass = preferredImpl(baseClass);
+        if (implClass != null)
+            return implClass;
+
+        // load the impls from the index, the entry is only removed once they
+        // are published so concurrent queries load and register them as well
+        // instead of finding neither, which is fine as registering is idempotent
+        final String baseName = baseClass.getName();
+        List<IndexedImpl> indexedImpls = indexedImplsByBaseName.get(baseName);
+        if (indexedImpls == null)
+            return null;
+        Set<String> loading = loadingIndexedImpls.get();
+        if (!loading.add(baseName))
+            return null; // queried while loading its impls
+
+        try {
+            List<Class<?>> implClasses = new ArrayList<>();
+            for (IndexedImpl indexedImpl : indexedImpls)
+                implClasses.add(indexedImpl.classLoader().apply(indexedImpl.implClassName()));
+            registerImpls(implClasses, 0);
+            indexedImplsByBaseName.remove(baseName, indexedImpls);
+        } finally {
+            loading.remove(baseName);
+        }
+
+        return preferredImpl(baseClass);
+    }
+
+    /**
+     * Get all registered implementations of the given class.
+     *
+     * @param baseClass The class.
+     * @return The impls ordered by preference.
+     */
+    public List<RegisteredImpl> getImpls(Class<?> baseClass) {
+        return registry.implsByBaseClass().getOrDefault(baseClass, List.of());
+    }
+
+    /**
+     * Registers the impls listed in all impl index resources visible to
+     * the given resource loader. The impl classes are only loaded, with
+     * the given function, when their abstraction is first queried.
+     *
+     * @param resourceLoader The loader to find the index resources with.
+     * @param classLoader The function to load impl classes by name with.
+     * @return The amount of indexed impls registered.
+     */
+    public int registerImplIndex(ClassLoader resourceLoader, Function<String, Class<?>> classLoader) {
+        int count = 0;
+        try {
+            Enumeration<URL> urls = resourceLoader.getResources(IMPL_INDEX_RESOURCE);
+            while (urls.hasMoreElements()) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (line.isEmpty() || line.startsWith("#"))
+                            continue;
+
+                        int space = line.indexOf(' ');
+                        if (space == -1)
+                            throw new IllegalArgumentException("Invalid impl index line: " + line);
+                        indexedImplsByBaseName.merge(line.substring(0, space), List.of(new IndexedImpl(line.substring(space + 1).trim(), classLoader)), AbstractionManager::concat);
+                        count++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read impl index resources", e);
+        }
+
+        return count;
+    }
+
+    // Concatenate the given lists into a new immutable list
+    private static <T> List<T> concat(List<T> a, List<T> b) {
+        List<T> list = new ArrayList<>(a);
+        list.addAll(b);
+        return List.copyOf(list);
     }
 
     /**
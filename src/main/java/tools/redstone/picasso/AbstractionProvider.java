@@ -2,17 +2,33 @@ package tools.redstone.picasso;
 
 import org.objectweb.asm.*;
 import tools.redstone.picasso.analysis.*;
+import tools.redstone.picasso.metrics.AnalysisProfiler;
+import tools.redstone.picasso.metrics.PicassoEvents;
+import tools.redstone.picasso.metrics.ProviderMetrics;
+import tools.redstone.picasso.metrics.RuntimeProbes;
 import tools.redstone.picasso.util.asm.ASMUtil;
 import tools.redstone.picasso.util.PackageWalker;
 import tools.redstone.picasso.util.ReflectUtil;
+import tools.redstone.picasso.util.classpath.ClassBytesSource;
+import tools.redstone.picasso.util.classpath.MappedJarClassBytesSource;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 /**
  * Provides systems, like dependency analysis and class
  * transformation, for abstractions.
@@ -21,6 +37,8 @@ import java.util.function.Predicate;
  */
 public class AbstractionProvider {
 
+    static final System.Logger LOGGER = System.getLogger(AbstractionProvider.class.getName());
+
     record DefaultImplAnalysis(Set<ReferenceInfo> unimplementedMethods) { }
 
     Predicate<String> classAuditPredicate = s -> true;                                          // The predicate for abstraction class names.
@@ -28,11 +46,24 @@ public class AbstractionProvider {
     final List<ClassAnalysisHook> analysisHooks = new ArrayList<>();                            // The global dependency analysis hooks
     
     final AbstractionManager abstractionManager;                                                // The manager of abstractions and their impls
-    final Map<ReferenceInfo, Boolean> implementedCache = new HashMap<>();                       // A cache to store whether a specific method is implemented for fast access
-
-    final Map<ReferenceInfo, ReferenceAnalysis> refAnalysisMap = new HashMap<>();               // All analyzed methods by their descriptor
-    final Map<String, ClassDependencyAnalyzer> analyzerMap = new HashMap<>();                   // All analyzers by class name
-    final ClassLoader transformingClassLoader;
+    final Map<ReferenceInfo, Boolean> implementedCache = new ConcurrentHashMap<>();             // A cache to store whether a specific method is implemented for fast access
+
+    final Map<ReferenceInfo, ReferenceAnalysis> refAnalysisMap = new ConcurrentHashMap<>();     // All analyzed methods by their descriptor
+    final Map<String, ClassDependencyAnalyzer> analyzerMap = new ConcurrentHashMap<>();         // All analyzers by class name, created on the class loading lock
+    final Map<String, ClassReader> classReaderCache = new ConcurrentHashMap<>();                // The class readers by class name, shared by analysis and class definition until the class is defined
+    final ReflectUtil.TransformingClassLoader transformingClassLoader;
+    ClassBytesSource classBytesSource;                                                          // The source of class bytes, null to use the loader resources
+    volatile List<String> recordedClassLoads;                                                   // The names of the classes defined by the transforming loader in order, if recording
+    final Map<String, byte[]> transformedBytesCache = new ConcurrentHashMap<>();                // The transformed bytes of classes analyzed by name but not yet defined
+    volatile Map<String, byte[]> exportedClassBytes;                                            // The transformed class bytes by class name, if exporting
+    volatile boolean releaseAnalyzers;                                                          // Whether to replace analyzers by summaries once their class is defined
+    final ClassSummaryCache summaryCache = new ClassSummaryCache();                             // The summaries of the classes whose analyzers were released
+    final Map<ClassInheritanceChecker, Map<String, Boolean>> inheritanceCache = new ConcurrentHashMap<>(); // The inheritance check results by class name per checker
+    final ProviderMetrics metrics = new ProviderMetrics(this);                                  // The counters and timers of this provider
+    ObjectName metricsObjectName;                                                               // The name the metrics are registered to the platform MBean server with, if registered
+    volatile AnalysisProfiler analysisProfiler;                                                 // The profiler recording analysis time, if profiling
+    volatile RuntimeProbes runtimeProbes;                                                       // The counters inserted into transformed code, if probing
+    volatile boolean probeNewClasses;                                                           // Whether to insert probes into newly transformed classes
 
     final ClassDependencyAnalyzer partialAnalyzer;                                              // Class analyzer used to initiate partial analysis
 
@@ -40,39 +71,108 @@ public class AbstractionProvider {
         this.abstractionManager = manager;
 
         // create class loader
-        this.transformingClassLoader = ReflectUtil.transformingClassLoader(
-                // name predicate
-                this::shouldTransformClass,
+        this.transformingClassLoader = new ReflectUtil.TransformingClassLoader(
                 // parent class loader
                 getClass().getClassLoader(),
+                // owner
+                this,
+                // name predicate
+                this::shouldTransformClass,
+                // class bytes
+                this::getClassReader,
                 // transformer
                 ((name, reader, writer) -> {
-//                    System.out.println("LOADER DEBUG loading class(" + name + ")");
-                    long t1 = System.currentTimeMillis();
-
                     var analyzer = analyzer(name, true);
                     if (analyzer.getClassAnalysis() == null || !analyzer.getClassAnalysis().completed)
-                        analyzer.analyzeAndTransform();
-                    analyzer.getClassNode().accept(writer);
+                        analyze(analyzer);
 
-                    long t2 = System.currentTimeMillis();
-//                    System.out.println("LOADER DEBUG transforming class took " + (t2 - t1) + "ms");
+                    long t = System.nanoTime();
+                    analyzer.getClassNode().accept(writer);
+                    metrics.writeTime.recordSince(t);
                 }), ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, false,
-                klass -> {
-                    // call class load hooks
-                    for (var hook : analysisHooks) {
-                        hook.onClassLoad(this, klass);
-                    }
-                });
+                this::onClassLoad);
 
+        this.transformingClassLoader.setTransformedSource(transformedBytesCache::remove);
+        this.transformingClassLoader.setPostTransform(this::onClassTransformed);
+        this.transformingClassLoader.setDefineTimer((klass, nanos) -> metrics.defineTime.record(nanos));
         this.partialAnalyzer = new ClassDependencyAnalyzer(this, null);
     }
 
+    // Called with the transformed bytes of each
+    // class before it is defined
+    private void onClassTransformed(String className, byte[] bytes) {
+        metrics.bytesOut.add(bytes.length);
+
+        Map<String, byte[]> exported = exportedClassBytes;
+        if (exported != null)
+            exported.put(className, bytes);
+    }
+
+    // Analyze and transform the class of the given analyzer
+    private void analyze(ClassDependencyAnalyzer analyzer) {
+        long t = System.nanoTime();
+        analyzer.analyzeAndTransform();
+        metrics.analyzeTime.recordSince(t);
+    }
+
+    // Called when a class was defined by the transforming
+    // loader, either transformed or from the class archive
+    private void onClassLoad(Class<?> klass) {
+        // record load order
+        List<String> recorded = recordedClassLoads;
+        if (recorded != null)
+            recorded.add(klass.getName());
+
+        // the bytes are not needed once defined
+        classReaderCache.remove(klass.getName());
+
+        // release analysis state
+        if (releaseAnalyzers)
+            releaseAnalyzer(klass.getName());
+
+        // call class load hooks
+        for (var hook : analysisHooks) {
+            metrics.hookCosts.timedHook(hook, "onClassLoad", klass.getName(), () -> hook.onClassLoad(this, klass));
+        }
+    }
+
+    /**
+     * Get the abstraction provider which owns the given class loader,
+     * meaning classes defined by it were transformed by the provider.
+     *
+     * @param loader The class loader.
+     * @return The provider or null if the loader is not owned by one.
+     */
+    public static AbstractionProvider forClassLoader(ClassLoader loader) {
+        if (loader instanceof ReflectUtil.OwnedClassLoader ownedLoader &&
+                ownedLoader.owner() instanceof AbstractionProvider provider)
+            return provider;
+        return null;
+    }
+
     public AbstractionProvider setClassAuditPredicate(Predicate<String> classAuditPredicate) {
         this.classAuditPredicate = classAuditPredicate;
         return this;
     }
 
+    /**
+     * Set the source of class bytes used for analysis and by the
+     * transforming class loader, by default class bytes are read
+     * from the resources of the class loader.
+     *
+     * @param classBytesSource The source.
+     * @return This.
+     */
+    public AbstractionProvider setClassBytesSource(ClassBytesSource classBytesSource) {
+        this.classBytesSource = classBytesSource;
+        this.transformingClassLoader.setBytesSource(classBytesSource);
+        return this;
+    }
+
+    public ClassBytesSource getClassBytesSource() {
+        return classBytesSource;
+    }
+
     public AbstractionProvider setRequiredMethodPredicate(Predicate<ReferenceAnalysis> requiredMethodPredicate) {
         this.requiredMethodPredicate = requiredMethodPredicate;
         return this;
@@ -86,10 +186,98 @@ public class AbstractionProvider {
         return requiredMethodPredicate;
     }
 
+    public ClassLoader getTransformingClassLoader() {
+        return transformingClassLoader;
+    }
+
+    public List<ClassAnalysisHook> getAnalysisHooks() {
+        return Collections.unmodifiableList(analysisHooks);
+    }
+
     public AbstractionManager abstractionManager() {
         return abstractionManager;
     }
 
+    public ProviderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the profiler to record the time spent analyzing methods with.
+     *
+     * @param analysisProfiler The profiler or null to stop profiling.
+     * @return This.
+     */
+    public AbstractionProvider setAnalysisProfiler(AnalysisProfiler analysisProfiler) {
+        this.analysisProfiler = analysisProfiler;
+        return this;
+    }
+
+    public AnalysisProfiler getAnalysisProfiler() {
+        return analysisProfiler;
+    }
+
+    /**
+     * Start or stop inserting runtime probes into the classes transformed
+     * from now on, classes which were already transformed keep theirs.
+     *
+     * @param enable Whether to insert probes.
+     * @return This.
+     */
+    public AbstractionProvider enableRuntimeProbes(boolean enable) {
+        if (enable && runtimeProbes == null)
+            this.runtimeProbes = new RuntimeProbes();
+        this.probeNewClasses = enable;
+        return this;
+    }
+
+    /**
+     * Get the runtime probes of this provider.
+     *
+     * @return The probes or null if probes were never enabled.
+     */
+    public RuntimeProbes getRuntimeProbes() {
+        return runtimeProbes;
+    }
+
+    /** Whether probes should be inserted into newly transformed classes */
+    public boolean isProbingNewClasses() {
+        return probeNewClasses;
+    }
+
+    /**
+     * Register the metrics of this provider to the platform MBean server,
+     * the MBean has to be unregistered for the provider to be collected.
+     *
+     * @param name The name to identify this provider by.
+     * @return The object name of the MBean.
+     * @see #unregisterMetricsMBean()
+     */
+    public synchronized ObjectName registerMetricsMBean(String name) {
+        try {
+            unregisterMetricsMBean();
+            ObjectName objectName = new ObjectName("tools.redstone.picasso:type=AbstractionProvider,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+            return this.metricsObjectName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics MBean for " + name, e);
+        }
+    }
+
+    public synchronized void unregisterMetricsMBean() {
+        if (metricsObjectName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsObjectName);
+        } catch (InstanceNotFoundException ignored) {
+            // unregistered externally
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister metrics MBean " + metricsObjectName, e);
+        } finally {
+            metricsObjectName = null;
+        }
+    }
+
     /**
      * Get the implementation class for the given abstraction class.
      *
@@ -114,6 +302,18 @@ public class AbstractionProvider {
         final Class<?> klass = findClass(resource.publicPath());
         abstractionManager.registerImpl(klass);
     }
+
+    /**
+     * Registers the impls from the impl indices on the class path to
+     * the abstraction manager, they are loaded through this provider
+     * when their abstraction is first queried.
+     *
+     * @return The amount of indexed impls.
+     * @see AbstractionManager#registerImplIndex(ClassLoader, java.util.function.Function)
+     */
+    public int registerIndexedImpls() {
+        return abstractionManager.registerImplIndex(transformingClassLoader, this::findClass);
+    }
     
     // Check whether the given ref is implemented
     // without referencing the cache
@@ -121,7 +321,7 @@ public class AbstractionProvider {
         try {
             // check hooks
             for (var hook : analysisHooks) {
-                var res = hook.checkImplemented(this, ref);
+                var res = metrics.hookCosts.timedHook(hook, "checkImplemented", ref, () -> hook.checkImplemented(this, ref));
                 if (res == null) continue;
                 return res;
             }
@@ -146,9 +346,12 @@ public class AbstractionProvider {
             return false;
 
         Boolean b = implementedCache.get(method);
-        if (b != null)
+        if (b != null) {
+            metrics.implementedCacheHits.increment();
             return b;
+        }
 
+        metrics.implementedCacheMisses.increment();
         implementedCache.put(method, b = isImplemented0(method));
         return b;
     }
@@ -195,6 +398,298 @@ public class AbstractionProvider {
         implementedCache.put(info, b);
     }
 
+    /**
+     * Get the class reader for the bytes of the given class, the
+     * bytes are only read once and shared by all consumers until
+     * the class is defined.
+     *
+     * @param className The class name.
+     * @return The class reader or null if the class could not be found.
+     */
+    public ClassReader getClassReader(String className) {
+        String publicName = className.replace('/', '.');
+        ClassReader reader = classReaderCache.get(publicName);
+        if (reader != null)
+            return reader;
+
+        try {
+            long t = System.nanoTime();
+            byte[] bytes;
+            if (classBytesSource != null) {
+                bytes = classBytesSource.getClassByteArray(publicName);
+            } else {
+                try (InputStream stream = transformingClassLoader.getResourceAsStream(publicName.replace('.', '/') + ".class")) {
+                    bytes = stream != null ? stream.readAllBytes() : null;
+                }
+            }
+
+            if (bytes == null)
+                return null;
+            reader = new ClassReader(bytes);
+            metrics.readTime.recordSince(t);
+            metrics.bytesIn.add(bytes.length);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while reading class bytes for " + publicName, e);
+        }
+
+        ClassReader existing = classReaderCache.putIfAbsent(publicName, reader);
+        return existing != null ? existing : reader;
+    }
+
+    /**
+     * Start or stop recording the names of the classes defined by the
+     * transforming class loader, starting discards earlier recordings.
+     *
+     * @param record Whether to record.
+     * @return This.
+     */
+    public AbstractionProvider recordClassLoads(boolean record) {
+        this.recordedClassLoads = record ? Collections.synchronizedList(new ArrayList<>()) : null;
+        return this;
+    }
+
+    /**
+     * Get the classes recorded since {@link #recordClassLoads(boolean)}
+     * was enabled as a profile.
+     *
+     * @return The profile or null if not recording.
+     */
+    public ClassLoadProfile getRecordedProfile() {
+        List<String> recorded = recordedClassLoads;
+        if (recorded == null)
+            return null;
+        synchronized (recorded) {
+            return new ClassLoadProfile(recorded);
+        }
+    }
+
+    /**
+     * Start or stop keeping the bytes of the classes transformed by
+     * this provider, to be written to a class archive later.
+     *
+     * @param export Whether to keep the transformed bytes.
+     * @return This.
+     */
+    public AbstractionProvider exportTransformedClasses(boolean export) {
+        this.exportedClassBytes = export ? new ConcurrentHashMap<>() : null;
+        return this;
+    }
+
+    /**
+     * Write the classes transformed since exporting was enabled to
+     * a class archive at the given path. The classes of the analysis
+     * hooks and their order are added to the fingerprint, as the
+     * transformed classes refer to hooks by index.
+     *
+     * @param path The path of the jar.
+     * @param fingerprint The fingerprint of the configuration, like hook settings and versions, the classes were transformed with.
+     * @throws IllegalStateException If exporting is not enabled, or runtime probes were enabled as their site ids are only valid in this run.
+     * @see TransformedClassArchive
+     */
+    public void writeClassArchive(Path path, String fingerprint) throws IOException {
+        Map<String, byte[]> classBytes = exportedClassBytes;
+        if (classBytes == null)
+            throw new IllegalStateException("Exporting transformed classes is not enabled");
+        if (runtimeProbes != null)
+            throw new IllegalStateException("Classes transformed with runtime probes can not be archived");
+        TransformedClassArchive.write(path, classBytes, archiveFingerprint(fingerprint));
+    }
+
+    // Add the analysis hook classes in order to the given fingerprint,
+    // as the hooks and their order shape the transformed classes
+    private String archiveFingerprint(String fingerprint) {
+        StringBuilder b = new StringBuilder(fingerprint).append(";hooks=");
+        for (int i = 0; i < analysisHooks.size(); i++) {
+            if (i > 0) b.append(',');
+            b.append(analysisHooks.get(i).getClass().getName());
+        }
+
+        return b.toString();
+    }
+
+    /**
+     * Load classes from the class archive at the given path if it
+     * exists and was written with the same fingerprint, archived
+     * classes are then no longer transformed while other classes still
+     * are. This should be called before any classes are loaded through
+     * this provider, after all analysis hooks were added.
+     *
+     * @param path The path of the jar.
+     * @param fingerprint The expected fingerprint.
+     * @return Whether the archive is used.
+     */
+    public boolean useClassArchive(Path path, String fingerprint) throws IOException {
+        if (!archiveFingerprint(fingerprint).equals(TransformedClassArchive.readFingerprint(path)))
+            return false;
+
+        // archived classes are defined by the transforming loader
+        // too, so there is only one class loading lock
+        this.transformingClassLoader.setArchive(MappedJarClassBytesSource.open(path), TransformedClassArchive.protectionDomain(path, transformingClassLoader));
+        return true;
+    }
+
+    /**
+     * Enable or disable releasing analyzers once their class is defined.
+     * The analyzer is then replaced by a compact {@link ClassSummary},
+     * and the analyses of its methods by partial analyses carrying only
+     * their summary, so the class node and reference analysis graph can
+     * be collected. The analysis of a released class is answered from its
+     * summary, which is recomputed without transforming the class if it
+     * was collected, see {@link #getClassSummary(String)}.
+     *
+     * @param release Whether to release analyzers.
+     * @return This.
+     */
+    public AbstractionProvider releaseAnalyzers(boolean release) {
+        this.releaseAnalyzers = release;
+        return this;
+    }
+
+    /**
+     * Set the budget for the summaries of released analyzers, in the
+     * estimated amount of retained references. Summaries over budget are
+     * softly retained in least recently used order, and are recomputed
+     * from the class bytes if collected.
+     *
+     * @param budget The budget or -1 for no limit.
+     * @return This.
+     * @see ClassSummary#weight()
+     */
+    public AbstractionProvider setSummaryBudget(long budget) {
+        this.summaryCache.setBudget(budget);
+        return this;
+    }
+
+    public ClassSummaryCache getSummaryCache() {
+        return summaryCache;
+    }
+
+    // Replace the analyzer of the given defined class by a
+    // summary, dropping its class node and analysis graph
+    private ClassSummary releaseAnalyzer(String className) {
+        synchronized (transformingClassLoader) {
+            var analyzer = analyzerMap.get(className);
+            if (analyzer == null || !analyzer.getClassAnalysis().completed)
+                return null;
+
+            ClassSummary summary = ClassSummary.of(analyzer.getClassAnalysis());
+            for (var method : summary.methods().values()) {
+                var analysis = refAnalysisMap.get(method.ref());
+                if (analysis == null || analysis.analyzer != analyzer)
+                    continue;
+
+                // later callers only need the flattened result
+                var partial = makePartial(method.ref());
+                partial.requiredDependencies.addAll(method.requiredDependencies());
+                partial.optionalReferenceNumber = method.optionalReferenceNumber();
+            }
+
+            analyzerMap.remove(className);
+            classReaderCache.remove(className); // read again if the summary was recomputed
+            analyzer.release();
+            summaryCache.put(className, summary);
+            return summary;
+        }
+    }
+
+    // Analyze the given defined class without an analyzer again to recompute
+    // its summary, without transforming it, and release the analyzer again
+    private ClassSummary resummarize(String className) {
+        synchronized (transformingClassLoader) {
+            var analyzer = createAnalyzer(className, className, false);
+            if (analyzer == null)
+                return null;
+
+            analyzer.analyzeOnly();
+            analyze(analyzer);
+            return releaseAnalyzer(className);
+        }
+    }
+
+    // Create a completed class analysis from the given summary, with the
+    // partial analyses carrying the summaries of the released methods
+    private ClassAnalysis analysisOf(ClassSummary summary) {
+        ClassAnalysis analysis = new ClassAnalysis(partialAnalyzer);
+        analysis.dependencies = new ArrayList<>(summary.dependencies());
+        for (var method : summary.methods().values()) {
+            var methodAnalysis = refAnalysisMap.get(method.ref());
+            if (methodAnalysis == null) {
+                methodAnalysis = makePartial(method.ref());
+                methodAnalysis.requiredDependencies.addAll(method.requiredDependencies());
+                methodAnalysis.optionalReferenceNumber = method.optionalReferenceNumber();
+            }
+
+            analysis.analyzedMethods.put(method.ref(), methodAnalysis);
+        }
+
+        analysis.completed = true;
+        return analysis;
+    }
+
+    // Check whether the given class name was defined by the transforming
+    // loader without an analyzer, because it was released or archived
+    private boolean isReleased(String publicName) {
+        return analyzerOrNull(publicName) == null && ReflectUtil.findLoadedClass(transformingClassLoader, publicName) != null;
+    }
+
+    // Check whether the analyzer of the given class was released,
+    // or the class was defined from the archive without one
+    private boolean isReleased(Class<?> klass) {
+        return klass.getClassLoader() == transformingClassLoader && analyzerOrNull(klass) == null;
+    }
+
+    /**
+     * Warm up this provider with the given profile. The class bytes are
+     * read in parallel on the executor, after which the classes are
+     * analyzed and transformed, or also defined, in profile order on a
+     * single task holding the class loading lock. The provider may be
+     * used by other threads in the meantime, analysis is serialized on
+     * the class loading lock. Classes which fail to warm up are logged,
+     * as the profile may be outdated.
+     *
+     * @param profile The profile.
+     * @param executor The executor to run the warmup on.
+     * @param define Whether to define the classes without initializing them.
+     * @return The future completed when the warmup is done.
+     */
+    public CompletableFuture<Void> warmup(ClassLoadProfile profile, Executor executor, boolean define) {
+        List<String> classNames = profile.classNames();
+        CompletableFuture<?>[] reads = new CompletableFuture<?>[classNames.size()];
+        for (int i = 0; i < reads.length; i++) {
+            final String className = classNames.get(i);
+            reads[i] = CompletableFuture.runAsync(() -> {
+                if (shouldTransformClass(className))
+                    getClassReader(className);
+            }, executor);
+        }
+
+        // read failures are reported when the class is analyzed below
+        return CompletableFuture.allOf(reads).handleAsync((__, readError) -> {
+            for (String className : classNames) {
+                if (!shouldTransformClass(className))
+                    continue;
+
+                try {
+                    if (define) {
+                        transformingClassLoader.loadClass(className);
+                        continue;
+                    }
+
+                    synchronized (transformingClassLoader) {
+                        var analyzer = analyzer(className, true);
+                        if (analyzer != null && (analyzer.getClassAnalysis() == null || !analyzer.getClassAnalysis().completed))
+                            analyze(analyzer);
+                    }
+                } catch (Throwable t) {
+                    // the profile may be outdated
+                    LOGGER.log(System.Logger.Level.WARNING, "Failed to warm up class " + className, t);
+                }
+            }
+
+            return null;
+        }, executor);
+    }
+
     /**
      * Get or create an analyzer for the given class name.
      *
@@ -205,9 +700,25 @@ public class AbstractionProvider {
         // get cached/active
         String publicName = className.replace('/', '.');
         ClassDependencyAnalyzer analyzer = analyzerMap.get(publicName);
-        if (analyzer != null)
+        if (analyzer != null) {
+            metrics.analyzerCacheHits.increment();
             return analyzer;
+        }
+
+        synchronized (transformingClassLoader) {
+            analyzer = analyzerMap.get(publicName);
+            if (analyzer != null) {
+                metrics.analyzerCacheHits.increment();
+                return analyzer;
+            }
+
+            return createAnalyzer(className, publicName, ignoreLoadedClasses);
+        }
+    }
 
+    // Create and register an analyzer for the given class,
+    // called while holding the class loading lock
+    private ClassDependencyAnalyzer createAnalyzer(String className, String publicName, boolean ignoreLoadedClasses) {
         try {
             className = className.replace('.', '/');
 
@@ -219,23 +730,19 @@ public class AbstractionProvider {
                 return null;
             }
 
-            // open resource
-            String classAsPath = className + ".class";
-            try (InputStream stream = transformingClassLoader.getResourceAsStream(classAsPath)) {
-                if (stream == null)
-                    throw new IllegalArgumentException("Could not find resource stream for " + classAsPath);
-                byte[] bytes = stream.readAllBytes();
+            ClassReader reader = getClassReader(publicName);
+            if (reader == null)
+                throw new IllegalArgumentException("Could not find resource stream for " + className + ".class");
 
-                ClassReader reader = new ClassReader(bytes);
+            // create and register analyzer
+            metrics.analyzerCacheMisses.increment();
+            var event = PicassoEvents.AnalyzerCreated.start();
+            var analyzer = new ClassDependencyAnalyzer(this, reader);
+            event.finish(publicName);
+            analyzer.hooks.addAll(this.analysisHooks);
+            analyzerMap.put(publicName, analyzer);
 
-                // create and register analyzer
-                analyzer = new ClassDependencyAnalyzer(this, reader);
-                analyzerMap.put(publicName, analyzer);
-
-                analyzer.hooks.addAll(this.analysisHooks);
-
-                return analyzer;
-            }
+            return analyzer;
         } catch (Exception e) {
             throw new RuntimeException("Error while creating MethodDependencyAnalyzer for class " + className, e);
         }
@@ -270,7 +777,7 @@ public class AbstractionProvider {
      * @return The class.
      */
     public Class<?> findClass(String name) {
-        return ReflectUtil.getClass(name, this.transformingClassLoader);
+        return ReflectUtil.getClass(name, transformingClassLoader);
     }
 
     /**
@@ -325,10 +832,117 @@ public class AbstractionProvider {
     }
 
     public boolean allImplemented(Class<?> klass) {
-        var analyzer = analyzer(klass);
-        if (analyzer == null || !analyzer.getClassAnalysis().completed)
-            return false;
-        return analyzer.getClassAnalysis().areAllImplemented();
+        // the summary may have been collected
+        if (isReleased(klass))
+            return allImplemented(klass.getName());
+
+        synchronized (transformingClassLoader) {
+            var analyzer = analyzer(klass);
+            if (analyzer == null || !analyzer.getClassAnalysis().completed)
+                return false;
+            return analyzer.getClassAnalysis().areAllImplemented();
+        }
+    }
+
+    /**
+     * Check whether all dependencies of the class by the given name
+     * are implemented, without loading or defining the class. The
+     * class is analyzed and transformed from its bytes if needed,
+     * the transformed bytes are kept until the class is defined.
+     *
+     * @param className The class name.
+     * @return Whether all dependencies are implemented.
+     */
+    public boolean allImplemented(String className) {
+        ClassSummary summary = getClassSummary(className);
+        return summary != null && summary.areAllImplemented(this);
+    }
+
+    /**
+     * Check for each of the given class names whether all dependencies
+     * of the class are implemented, without defining the classes.
+     *
+     * @param classNames The class names.
+     * @return The results by class name, in the order of the names.
+     * @see #allImplemented(String)
+     */
+    public Map<String, Boolean> allImplemented(Collection<String> classNames) {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        for (String className : classNames) {
+            results.put(className, allImplemented(className));
+        }
+
+        return results;
+    }
+
+    /**
+     * Get the class analysis for the class by the given name, analyzing
+     * and transforming it from its bytes if it was not analyzed yet. The
+     * analysis of a class whose analyzer was released is created from
+     * its summary.
+     *
+     * @param className The class name.
+     * @return The analysis or null if the class is not transformed by this provider.
+     */
+    public ClassAnalysis getClassAnalysis(String className) {
+        String publicName = className.replace('/', '.');
+        synchronized (transformingClassLoader) {
+            if (isReleased(publicName)) {
+                ClassSummary summary = getClassSummary(publicName);
+                return summary != null ? analysisOf(summary) : null;
+            }
+
+            var analyzer = analyzer(publicName, false);
+            if (analyzer == null)
+                return null;
+
+            if (analyzer.getClassAnalysis() == null || !analyzer.getClassAnalysis().completed) {
+                analyze(analyzer);
+
+                // keep the transformed bytes if the
+                // class has not been defined yet
+                if (ReflectUtil.findLoadedClass(transformingClassLoader, publicName) == null) {
+                    long t = System.nanoTime();
+                    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+                    analyzer.getClassNode().accept(writer);
+                    metrics.writeTime.recordSince(t);
+                    transformedBytesCache.put(publicName, writer.toByteArray());
+                }
+
+                // the class is already defined or will be
+                // defined from the transformed bytes
+                classReaderCache.remove(publicName);
+            }
+
+            return analyzer.getClassAnalysis();
+        }
+    }
+
+    /**
+     * Get the summary of the analysis of the class by the given name,
+     * analyzing it from its bytes if it was not analyzed yet. If the
+     * summary of a released analyzer was collected, the defined class
+     * is analyzed again without being transformed and released again.
+     *
+     * @param className The class name.
+     * @return The summary or null if the class is not transformed by this provider.
+     */
+    public ClassSummary getClassSummary(String className) {
+        String publicName = className.replace('/', '.');
+        ClassSummary summary = summaryCache.get(publicName);
+        if (summary != null)
+            return summary;
+
+        synchronized (transformingClassLoader) {
+            summary = summaryCache.get(publicName);
+            if (summary != null)
+                return summary;
+            if (isReleased(publicName))
+                return resummarize(publicName);
+
+            ClassAnalysis analysis = getClassAnalysis(publicName);
+            return analysis != null ? ClassSummary.of(analysis) : null;
+        }
     }
 
     /**
@@ -339,10 +953,15 @@ public class AbstractionProvider {
      * @return The analysis.
      */
     public ClassAnalysis getClassAnalysis(Class<?> klass) {
-        var analyzer = analyzer(klass);
-        if (analyzer == null || !analyzer.getClassAnalysis().completed)
-            return null;
-        return analyzer.getClassAnalysis();
+        if (isReleased(klass))
+            return getClassAnalysis(klass.getName());
+
+        synchronized (transformingClassLoader) {
+            var analyzer = analyzer(klass);
+            if (analyzer == null || !analyzer.getClassAnalysis().completed)
+                return null;
+            return analyzer.getClassAnalysis();
+        }
     }
 
     /**
@@ -372,23 +991,30 @@ public class AbstractionProvider {
 
     /* ------------ Hooks -------------- */
 
-    public record ClassInheritanceChecker(Class<?> itf, String itfInternalName, Map<String, Boolean> cache) {
+    public record ClassInheritanceChecker(Class<?> itf, String itfInternalName) {
         // Class inheritance checkers by class checked
-        private static final Map<Class<?>, ClassInheritanceChecker> checkerCache = new HashMap<>();
+        private static final ClassValue<ClassInheritanceChecker> checkerCache = new ClassValue<>() {
+            @Override
+            protected ClassInheritanceChecker computeValue(Class<?> itf) {
+                return new ClassInheritanceChecker(itf, itf.getName().replace('.', '/'));
+            }
+        };
 
         public static ClassInheritanceChecker forClass(Class<?> itf) {
-            return checkerCache.computeIfAbsent(itf, __ -> new ClassInheritanceChecker(itf, itf.getName().replace('.', '/'), new HashMap<>()));
+            return checkerCache.get(itf);
         }
 
         /**
          * Checks whether the class/interface by the given name inherits
-         * from this checker's class/interface.
+         * from this checker's class/interface. The results are cached
+         * per provider, as names may resolve differently per provider.
          *
          * @param mgr The manager to resolve analyzers.
          * @param name The name of the class.
          * @return Whether the class inherits it.
          */
         public boolean checkClassInherits(AbstractionProvider mgr, String name) {
+            Map<String, Boolean> cache = mgr.inheritanceCache.computeIfAbsent(this, __ -> new ConcurrentHashMap<>());
             Boolean b = cache.get(name);
             if (b != null)
                 return b;
@@ -469,7 +1095,7 @@ public class AbstractionProvider {
     public static ClassAnalysisHook checkForExplicitImplementation(Class<?> unimplementedOwnerItf) {
         final ClassInheritanceChecker checker = ClassInheritanceChecker.forClass(unimplementedOwnerItf);
         return new ClassAnalysisHook() {
-            final Map<Class<?>, DefaultImplAnalysis> defaultImplAnalysisCache = new HashMap<>(); // Cache for default implementation analysis per class
+            final Map<Class<?>, DefaultImplAnalysis> defaultImplAnalysisCache = new ConcurrentHashMap<>(); // Cache for default implementation analysis per class
 
             // Check the bytecode of the owner of the given method
             // to see whether
@@ -484,7 +1110,13 @@ public class AbstractionProvider {
 
                 // analyze bytecode
                 final Set<ReferenceInfo> unimplementedMethods = new HashSet<>();
-                ReflectUtil.analyze(klass, new ClassVisitor(ASMUtil.ASM_V) {
+                // the class is already defined, so take the shared reader if it is still
+                // cached and otherwise read it through its own loader, as the provider's
+                // bytes source may not contain the abstraction classes
+                ClassReader reader = provider.classReaderCache.remove(klass.getName());
+                if (reader == null)
+                    reader = ReflectUtil.reader(klass);
+                reader.accept(new ClassVisitor(ASMUtil.ASM_V) {
                     @Override
                     public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
                         final ReferenceInfo currentMethod = ReferenceInfo.forMethodInfo(klass.getName(), name, descriptor, Modifier.isStatic(access));
@@ -498,7 +1130,7 @@ public class AbstractionProvider {
                             }
                         };
                     }
-                });
+                }, 0);
 
                 defaultImplAnalysisCache.put(klass, analysis = new DefaultImplAnalysis(unimplementedMethods));
                 return !unimplementedMethods.contains(methodInfo);
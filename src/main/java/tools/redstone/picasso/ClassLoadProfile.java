@@ -0,0 +1,64 @@
+package tools.redstone.picasso;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ordered names of the classes loaded through the transforming
+ * class loader of a provider during a run, used to warm up the
+ * provider on the next start.
+ *
+ * The file format is one class name per line, lines starting
+ * with a {@code #} are ignored.
+ *
+ * @see AbstractionProvider#recordClassLoads(boolean)
+ * @see AbstractionProvider#warmup(ClassLoadProfile, java.util.concurrent.Executor, boolean)
+ */
+public record ClassLoadProfile(List<String> classNames) {
+
+    static final String HEADER = "# picasso class load profile";
+
+    public ClassLoadProfile {
+        classNames = List.copyOf(classNames);
+    }
+
+    /**
+     * Read the profile from the given file.
+     *
+     * @param path The path of the file.
+     * @return The profile.
+     */
+    public static ClassLoadProfile read(Path path) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            classNames.add(line);
+        }
+
+        return new ClassLoadProfile(classNames);
+    }
+
+    /**
+     * Write this profile to the given file.
+     *
+     * @param path The path of the file.
+     */
+    public void write(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (String className : classNames) {
+                writer.write(className);
+                writer.newLine();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package tools.redstone.picasso;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * A jar of classes as transformed by a provider, which can be
+ * loaded on later starts instead of transforming the classes again.
+ *
+ * The archived classes are defined by the transforming loader of the
+ * provider from the jar bytes, with the jar as their code source, which
+ * allows the JVM to archive them with {@code -XX:ArchiveClassesAtExit}
+ * and map them from the {@code -XX:SharedArchiveFile} on later starts.
+ *
+ * @see AbstractionProvider#exportTransformedClasses(boolean)
+ * @see AbstractionProvider#useClassArchive(Path, String)
+ */
+public final class TransformedClassArchive {
+
+    /** The manifest attribute storing the fingerprint of the archive */
+    public static final Attributes.Name FINGERPRINT = new Attributes.Name("Picasso-Fingerprint");
+
+    // The fixed entry time for a reproducible layout
+    static final long ENTRY_TIME = 315532800000L; // 1980-01-01T00:00:00Z
+
+    private TransformedClassArchive() { }
+
+    /**
+     * Write the given class bytes to a jar at the given path. The
+     * entries are sorted by name and have a fixed time, so the same
+     * classes always produce the same jar.
+     *
+     * @param path The path of the jar.
+     * @param classBytes The transformed class bytes by class name.
+     * @param fingerprint The fingerprint identifying the configuration the classes were transformed with.
+     */
+    public static void write(Path path, Map<String, byte[]> classBytes, String fingerprint) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(FINGERPRINT, fingerprint);
+
+        // write to a temporary file first so a
+        // running loader never sees a partial jar
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp); JarOutputStream jar = new JarOutputStream(out)) {
+            JarEntry manifestEntry = new JarEntry(JarFile.MANIFEST_NAME);
+            manifestEntry.setTime(ENTRY_TIME);
+            jar.putNextEntry(manifestEntry);
+            manifest.write(jar);
+            jar.closeEntry();
+
+            for (String className : new TreeSet<>(classBytes.keySet())) {
+                JarEntry entry = new JarEntry(className.replace('.', '/') + ".class");
+                entry.setTime(ENTRY_TIME);
+                jar.putNextEntry(entry);
+                jar.write(classBytes.get(className));
+                jar.closeEntry();
+            }
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Read the fingerprint of the archive at the given path.
+     *
+     * @param path The path of the jar.
+     * @return The fingerprint or null if the file is absent or not an archive.
+     */
+    public static String readFingerprint(Path path) {
+        if (!Files.isRegularFile(path))
+            return null;
+        try (JarFile jar = new JarFile(path.toFile())) {
+            Manifest manifest = jar.getManifest();
+            return manifest != null ? manifest.getMainAttributes().getValue(FINGERPRINT) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the names of the classes in the archive at the given path.
+     *
+     * @param path The path of the jar.
+     * @return The class names.
+     */
+    public static Set<String> readClassNames(Path path) throws IOException {
+        Set<String> classNames = new HashSet<>();
+        try (JarFile jar = new JarFile(path.toFile())) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.endsWith(".class"))
+                    classNames.add(name.substring(0, name.length() - 6).replace('/', '.'));
+            }
+        }
+
+        return classNames;
+    }
+
+    /**
+     * Get the protection domain to define the classes from the archive
+     * at the given path with, its code source is the jar.
+     *
+     * @param path The path of the jar.
+     * @param loader The loader defining the classes.
+     * @return The protection domain.
+     */
+    public static ProtectionDomain protectionDomain(Path path, ClassLoader loader) {
+        try {
+            CodeSource codeSource = new CodeSource(path.toUri().toURL(), (CodeSigner[]) null);
+            return new ProtectionDomain(codeSource, null, loader, null);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid archive path " + path, e);
+        }
+    }
+
+}
@@ -1,9 +1,8 @@
 package tools.redstone.picasso.adapter;
 
-import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.*;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import tools.redstone.picasso.AbstractionProvider;
 import tools.redstone.picasso.analysis.*;
@@ -11,55 +10,98 @@ import tools.redstone.picasso.util.asm.ASMUtil;
 import tools.redstone.picasso.util.asm.ComputeStack;
 import tools.redstone.picasso.util.asm.MethodWriter;
 
-import java.lang.ref.Cleaner;
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.invoke.MethodHandles;
+import java.util.*;
 import java.util.function.Function;
 
-public class AdapterAnalysisHook implements ClassAnalysisHook, Cleaner.Cleanable {
+public class AdapterAnalysisHook implements ClassAnalysisHook {
 
-    static final Cleaner CLEANER = Cleaner.create();
+    static final Type TYPE_Object = Type.getType(Object.class);
+    static final Type TYPE_Function = Type.getType(Function.class);
+    static final String NAME_Function = TYPE_Function.getInternalName();
+    static final Type TYPE_AdapterAnalysisHook = Type.getType(AdapterAnalysisHook.class);
 
-    private static final Map<Integer, AdapterRegistry>
-            INTERNAL_ADAPTER_REGISTRY_BY_HOOK = new HashMap<>();
+    // The bootstrap method for the adapter function constants
+    static final Handle HANDLE_bootstrapAdapterFunction = new Handle(Opcodes.H_INVOKESTATIC, TYPE_AdapterAnalysisHook.getInternalName(), "bootstrapAdapterFunction",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;Ljava/lang/String;Ljava/lang/Class;Ljava/lang/Class;)Ljava/lang/Object;", false);
 
     /* /!\ INTERNAL METHOD ONLY USED IN BYTECODE /!\ */
-    public static AdapterRegistry getAdapterRegistryByHookId(int id) {
-        return INTERNAL_ADAPTER_REGISTRY_BY_HOOK.get(id);
+    public static Object bootstrapAdapterFunction(MethodHandles.Lookup lookup, String kind, Class<?> type,
+                                                  String hookKey, Class<?> srcClass, Class<?> dstClass) {
+        // find the registry through the provider which loaded the class,
+        // so it is only referenced for as long as the provider is
+        AbstractionProvider provider = AbstractionProvider.forClassLoader(lookup.lookupClass().getClassLoader());
+        if (provider == null)
+            throw new IllegalStateException("Class " + lookup.lookupClass().getName() + " was not loaded by an abstraction provider");
+        AdapterAnalysisHook hook = findHook(provider, hookKey);
+        if (hook == null)
+            throw new IllegalStateException("No adapter hook with key `" + hookKey + "` registered to the provider of " + lookup.lookupClass().getName());
+        AdapterRegistry registry = hook.adapterRegistry;
+
+        return switch (kind) {
+            case "primitive" -> registry.primitiveAdaptingFunction(srcClass, dstClass);
+            case "collection" -> registry.collectionAdaptingFunction(srcClass, dstClass);
+            case "array" -> registry.arrayAdaptingFunction(srcClass, dstClass);
+            default -> registry.lazyAdaptingFunction(srcClass, dstClass);
+        };
     }
 
-    static int idCounter = 0;
-
-    static final Type TYPE_Object = Type.getType(Object.class);
-    static final Type TYPE_AdapterRegistry = Type.getType(AdapterRegistry.class);
-    static final Type TYPE_Function = Type.getType(Function.class);
-    static final String NAME_Function = TYPE_Function.getInternalName();
-    static final Type TYPE_AdapterAnalysisHook = Type.getType(AdapterAnalysisHook.class);
+    // Find the adapter hook with the given key registered to the given provider
+    static AdapterAnalysisHook findHook(AbstractionProvider provider, String key) {
+        for (ClassAnalysisHook hook : provider.getAnalysisHooks())
+            if (hook instanceof AdapterAnalysisHook adapterHook && adapterHook.key.equals(key))
+                return adapterHook;
+        return null;
+    }
 
+    private final String key;                                                    // The key identifying this hook in the transformed classes, stable across runs
     private final AdapterRegistry adapterRegistry;                               // The adapter registry to source adapters from
-    private int adapterIdCounter = 0;                                            // The counter for the $$adapter_xx fields
     private final AbstractionProvider.ClassInheritanceChecker inheritanceChecker; // The inheritance checker to check for `adapt` calls
-    private final int id = idCounter++;
 
     public AdapterAnalysisHook(Class<?> adaptMethodOwner, AdapterRegistry adapterRegistry) {
+        this(adaptMethodOwner.getName(), adaptMethodOwner, adapterRegistry);
+    }
+
+    /**
+     * Create an adapter hook identified by the given key, which has to be
+     * unique among the adapter hooks of a provider. The key is baked into
+     * the transformed classes to find the registry when they run.
+     *
+     * @param key The key.
+     * @param adaptMethodOwner The class declaring the `adapt` methods.
+     * @param adapterRegistry The adapter registry.
+     */
+    public AdapterAnalysisHook(String key, Class<?> adaptMethodOwner, AdapterRegistry adapterRegistry) {
+        this.key = key;
         this.adapterRegistry = adapterRegistry;
         inheritanceChecker = AbstractionProvider.ClassInheritanceChecker.forClass(adaptMethodOwner);
-        INTERNAL_ADAPTER_REGISTRY_BY_HOOK.put(id, adapterRegistry);
-        CLEANER.register(this, () -> { });
     }
 
-    @Override
-    public void clean() {
-        // remove registry reference when this hook is cleaned
-        INTERNAL_ADAPTER_REGISTRY_BY_HOOK.remove(id);
+    public String getKey() {
+        return key;
+    }
+
+    public AdapterRegistry getAdapterRegistry() {
+        return adapterRegistry;
     }
 
+    /** The element types of a container adapted element by element */
+    record ContainerElements(boolean array, Type srcElement, Type dstElement) { }
+
     static class TrackedReturnValue implements ComputeStack.Value {
         final ComputeStack.ReturnValue returnValue; // The analyzer return value
-        String dstType;                                        // The destination type
-
-        TrackedReturnValue(ComputeStack.ReturnValue returnValue) {
+        final String srcType;                       // The source type signature
+        final Type srcPrimitiveType;                // The primitive source type if the source value was boxed for the call
+        String dstType;                             // The destination type
+        Type castType;                              // The type the value was cast to, if any
+        boolean awaitingUnbox;                      // Whether the value was cast to a box type and may be unboxed next
+        ContainerElements containerElements;        // The resolved container element types, if it's a container adaptation
+        boolean containerResolved;                  // Whether the container element types were resolved
+
+        TrackedReturnValue(ComputeStack.ReturnValue returnValue, String srcType, Type srcPrimitiveType) {
             this.returnValue = returnValue;
+            this.srcType = srcType;
+            this.srcPrimitiveType = srcPrimitiveType;
         }
 
         @Override
@@ -71,6 +113,82 @@ public class AdapterAnalysisHook implements ClassAnalysisHook, Cleaner.Cleanable
         public String signature() {
             return returnValue.signature();
         }
+
+        // Whether the adapt call converts between primitives and may be specialized
+        boolean isPrimitive() {
+            return srcPrimitiveType != null && dstType != null && ASMUtil.boxedType(ASMUtil.erasure(dstType)) != null;
+        }
+    }
+
+    // Whether the given adapt call is specialized to a primitive adapter, which
+    // requires one registered for the exact types, otherwise the boxed values
+    // are adapted by the reference adapters like before
+    private boolean isSpecialized(TrackedReturnValue rv) {
+        return rv.isPrimitive() && adapterRegistry.findPrimitiveAdapter(ASMUtil.asClass(rv.srcPrimitiveType), ASMUtil.asClass(ASMUtil.erasure(rv.dstType))) != null;
+    }
+
+    // Resolve whether the given adapt call converts between containers
+    // which should be adapted element by element, this is the case for
+    // reference arrays and generic collections into lists when there
+    // is no adapter for the container types themselves
+    private ContainerElements containerElements(TrackedReturnValue rv) {
+        if (rv.containerResolved)
+            return rv.containerElements;
+        rv.containerResolved = true;
+
+        Type srcType = ASMUtil.erasure(rv.srcType);
+        Type dstType = ASMUtil.erasure(rv.dstType);
+        if (rv.srcType.equals(rv.dstType) || adapterRegistry.findAdapterFunction(srcType, dstType) != null)
+            return null;
+
+        // reference arrays
+        if (srcType.getSort() == Type.ARRAY || dstType.getSort() == Type.ARRAY) {
+            if (srcType.getSort() != Type.ARRAY || dstType.getSort() != Type.ARRAY ||
+                    srcType.getDimensions() != 1 || dstType.getDimensions() != 1 ||
+                    srcType.getElementType().getSort() != Type.OBJECT || dstType.getElementType().getSort() != Type.OBJECT)
+                return null;
+            return rv.containerElements = new ContainerElements(true, srcType.getElementType(), dstType.getElementType());
+        }
+
+        // collections into lists
+        if (srcType.getSort() != Type.OBJECT || dstType.getSort() != Type.OBJECT)
+            return null;
+        try {
+            if (!Collection.class.isAssignableFrom(ASMUtil.asClass(srcType)) || !ASMUtil.asClass(dstType).isAssignableFrom(ArrayList.class))
+                return null;
+        } catch (IllegalArgumentException e) {
+            return null; // not a collection known to us
+        }
+
+        List<String> srcArgs = ASMUtil.typeArguments(rv.srcType);
+        List<String> dstArgs = ASMUtil.typeArguments(rv.dstType);
+        if (dstArgs.size() != 1)
+            return null;
+        Type srcElement = srcArgs.size() == 1 ? ASMUtil.erasure(srcArgs.get(0)) : TYPE_Object; // adapt by runtime class if unknown
+        return rv.containerElements = new ContainerElements(false, srcElement, ASMUtil.erasure(dstArgs.get(0)));
+    }
+
+    // Create the dynamic constant resolving to the adapter
+    // function for the given adapt call, this is resolved once
+    // by the JVM when the instruction is first executed
+    private ConstantDynamic adapterConstant(AnalysisContext context, TrackedReturnValue rv, Type srcType, Type dstType) {
+        if (findHook(context.abstractionProvider(), key) != this)
+            throw new IllegalStateException("Adapter hook `" + key + "` is not registered to the abstraction provider or its key is not unique");
+
+        if (isSpecialized(rv)) {
+            Class<?> functionInterface = PrimitiveAdapter.functionInterface(ASMUtil.asClass(rv.srcPrimitiveType), ASMUtil.asClass(dstType));
+            return new ConstantDynamic("primitive", Type.getDescriptor(functionInterface), HANDLE_bootstrapAdapterFunction,
+                    key, ASMUtil.classConstant(rv.srcPrimitiveType), ASMUtil.classConstant(dstType));
+        }
+
+        ContainerElements containerElements = containerElements(rv);
+        if (containerElements != null) {
+            return new ConstantDynamic(containerElements.array() ? "array" : "collection", TYPE_Function.getDescriptor(), HANDLE_bootstrapAdapterFunction,
+                    key, containerElements.srcElement(), containerElements.dstElement());
+        }
+
+        return new ConstantDynamic("adapter", TYPE_Function.getDescriptor(), HANDLE_bootstrapAdapterFunction,
+                key, srcType, dstType);
     }
 
     @Override
@@ -80,60 +198,59 @@ public class AdapterAnalysisHook implements ClassAnalysisHook, Cleaner.Cleanable
         return new MethodVisitorHook() {
             @Override
             public boolean visitMethodInsn(AnalysisContext ctx, int opcode, ReferenceInfo info) {
+                // check for the unboxing of a value cast to a box type
+                if (ctx.currentComputeStack().peekOrNull() instanceof TrackedReturnValue rv && rv.awaitingUnbox &&
+                        ASMUtil.isUnboxingMethod(info) && info.internalClassName().equals(Type.getType(rv.dstType).getInternalName())) {
+                    ctx.currentComputeStack().pop();
+                    ctx.currentComputeStack().push(ComputeStack.ReturnValue.of(info));
+
+                    rv.awaitingUnbox = false;
+                    rv.dstType = info.type().getReturnType().getDescriptor();
+
+                    // keep the unboxing unless the call is specialized
+                    writer.addInsn(v -> {
+                        if (!isSpecialized(rv))
+                            v.visitMethodInsn(opcode, info.internalClassName(), info.name(), info.descriptor(), false);
+                    });
+
+                    return true;
+                }
+
                 // check for #adapt(Object)
                 if (inheritanceChecker.checkClassInherits(ctx.abstractionProvider(), info.className()) && info.name().equals("adapt")) {
                     boolean isStatic = opcode == Opcodes.INVOKESTATIC;
                     Object instanceValue = isStatic ? context.currentComputeStack().pop() : null;
                     Object srcValue = context.currentComputeStack().pop();
-                    String srcType = ((ComputeStack.Value)srcValue).signature();
+                    ComputeStack.Value srcTrackedValue = (ComputeStack.Value) srcValue;
+                    String srcType = srcTrackedValue.signature() != null ? srcTrackedValue.signature() : srcTrackedValue.type().getDescriptor();
+
+                    // check for a boxed primitive source value, if so
+                    // remove the boxing call so it can be specialized
+                    Type srcPrimitiveType = null;
+                    if (srcValue instanceof ComputeStack.ReturnValue srcReturnValue && ASMUtil.isBoxingMethod(srcReturnValue.method()) &&
+                            writer.lastInsn() instanceof MethodInsnNode boxInsn && boxInsn.getOpcode() == Opcodes.INVOKESTATIC &&
+                            boxInsn.owner.equals(srcReturnValue.method().internalClassName()) && boxInsn.name.equals("valueOf")) {
+                        writer.removeInsn(boxInsn);
+                        srcPrimitiveType = srcReturnValue.method().type().getArgumentTypes()[0];
+                    }
 
                     // load the src class
-                    Type srcAsmType = Type.getType(srcType);
+                    Type srcAsmType = ASMUtil.erasure(srcType);
                     if (srcAsmType.getSort() == Type.OBJECT)
                         context.abstractionProvider().findClass(srcAsmType.getClassName());
 
                     // push tracked return value
-                    var trackedReturnValue = new TrackedReturnValue(new ComputeStack.ReturnValue(info, TYPE_Object, TYPE_Object.toString()));
+                    var trackedReturnValue = new TrackedReturnValue(new ComputeStack.ReturnValue(info, TYPE_Object, TYPE_Object.toString()),
+                            srcPrimitiveType != null ? ASMUtil.boxedType(srcPrimitiveType).getDescriptor() : srcType, srcPrimitiveType);
                     context.currentComputeStack().push(trackedReturnValue);
 
-                    // add field to class
-                    String fieldName = "$$adapter_" + (adapterIdCounter++);
-                    currAnalysis.classNode()
-                            // create static field
-                            .visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, fieldName, TYPE_Function.getDescriptor(), TYPE_Function.getDescriptor(), null /* set in static initializer */);
-
-                    // modify <cinit>
-                    var mCInit = ASMUtil.findMethod(currAnalysis.classNode(), "<clinit>", "()V");
-                    boolean created = false;
-                    if (mCInit == null) {
-                        mCInit = (MethodNode) currAnalysis.classNode().visitMethod(Opcodes.ACC_STATIC | Opcodes.ACC_PUBLIC, "<clinit>", "()V", "()V", new String[] { });
-                        created = true;
-                        mCInit.visitCode();
-                    }
-
-                    boolean finalCreated = created;
-                    var clinitInsn = new InsnNode(-1) {
-                        @Override
-                        public void accept(MethodVisitor v) {
-                            String dstType = trackedReturnValue.dstType;
-                            if (dstType == null)
-                                return;
-                            Type dstAsmType = Type.getType(dstType);
-
-                            v.visitIntInsn(Opcodes.SIPUSH, id); // get adapter registry instance
-                            v.visitMethodInsn(Opcodes.INVOKESTATIC, TYPE_AdapterAnalysisHook.getInternalName(), "getAdapterRegistryByHookId", "(I)L" + TYPE_AdapterRegistry.getInternalName() + ";", false);
-                            v.visitLdcInsn(srcAsmType); // push src and dst types
-                            v.visitLdcInsn(dstAsmType); // then find the dynamic adapter
-                            v.visitMethodInsn(Opcodes.INVOKEINTERFACE, TYPE_AdapterRegistry.getInternalName(), "lazyAdaptingFunction", "(Ljava/lang/Class;Ljava/lang/Class;)" + TYPE_Function.getDescriptor(), true);
-                            v.visitFieldInsn(Opcodes.PUTSTATIC, currMethod.internalClassName(), fieldName, TYPE_Function.getDescriptor());
-                            if (finalCreated) v.visitInsn(Opcodes.RETURN);
-                        }
-                    };
-
-                    if (mCInit.instructions.size() != 0) mCInit.instructions.insertBefore(mCInit.instructions.getFirst(), clinitInsn);
-                    else mCInit.instructions.add(clinitInsn);
+                    // dynamic constants require class file version 55
+                    ClassNode classNode = currAnalysis.classNode();
+                    if ((classNode.version & 0xFFFF) < Opcodes.V11)
+                        classNode.version = Opcodes.V11;
 
                     // replace instruction
+                    final Type finalSrcPrimitiveType = srcPrimitiveType;
                     writer.addInsn(v -> {
                         // if, when we come to write this instruction,
                         // the dst type still has not been determined we throw an error
@@ -142,13 +259,35 @@ public class AdapterAnalysisHook implements ClassAnalysisHook, Cleaner.Cleanable
                             throw new IllegalStateException("Could not determine dst type for `adapt(value)` call in " + currMethod + " with src type `" + srcAsmType + "`");
 
                         // load the dst class
-                        Type dstAsmType = Type.getType(dstType);
+                        Type dstAsmType = ASMUtil.erasure(dstType);
                         if (dstAsmType.getSort() == Type.OBJECT)
                             context.abstractionProvider().findClass(dstAsmType.getClassName());
 
+                        if (isSpecialized(trackedReturnValue)) {
+                            visitPrimitiveAdapt(v, finalSrcPrimitiveType, dstAsmType, isStatic, adapterConstant(context, trackedReturnValue, srcAsmType, dstAsmType));
+                            return;
+                        }
+
+                        // the value was not specialized, restore the boxing
+                        // and adapt between the box types
+                        if (finalSrcPrimitiveType != null)
+                            ASMUtil.visitBox(v, finalSrcPrimitiveType);
+                        if (ASMUtil.boxedType(dstAsmType) != null)
+                            dstAsmType = ASMUtil.boxedType(dstAsmType);
+
                         // check if the adapter exists
-                        if (adapterRegistry.findAdapterFunction(srcAsmType, dstAsmType) == null)
+                        ContainerElements containerElements = containerElements(trackedReturnValue);
+                        if (containerElements != null) {
+                            if (containerElements.srcElement().getSort() == Type.OBJECT)
+                                context.abstractionProvider().findClass(containerElements.srcElement().getClassName());
+                            if (containerElements.dstElement().getSort() == Type.OBJECT)
+                                context.abstractionProvider().findClass(containerElements.dstElement().getClassName());
+                            if (!containerElements.srcElement().equals(TYPE_Object) &&
+                                    adapterRegistry.findAdapterFunction(containerElements.srcElement(), containerElements.dstElement()) == null)
+                                throw new IllegalStateException("No adapter found for src element = " + containerElements.srcElement() + ", dst element = " + containerElements.dstElement() + " in method " + currMethod);
+                        } else if (adapterRegistry.findAdapterFunction(srcAsmType, dstAsmType) == null) {
                             throw new IllegalStateException("No adapter found for src = " + srcAsmType + ", dst = " + dstAsmType + " in method " + currMethod);
+                        }
 
                         // pop original instance variable after
                         if (!isStatic) {
@@ -158,7 +297,7 @@ public class AdapterAnalysisHook implements ClassAnalysisHook, Cleaner.Cleanable
                         }
 
                         // push adapter and swap
-                        v.visitFieldInsn(Opcodes.GETSTATIC, currMethod.internalClassName(), fieldName, TYPE_Function.getDescriptor());
+                        v.visitLdcInsn(adapterConstant(context, trackedReturnValue, srcAsmType, dstAsmType));
                         v.visitInsn(Opcodes.SWAP); // function - val
 
                         // make it call Function#apply
@@ -172,14 +311,56 @@ public class AdapterAnalysisHook implements ClassAnalysisHook, Cleaner.Cleanable
                 return false;
             }
 
+            // Writes the call to the primitive adapter function
+            private void visitPrimitiveAdapt(MethodVisitor v, Type srcType, Type dstType, boolean isStatic, ConstantDynamic function) {
+                boolean wide = srcType.getSize() == 2;
+                if (!isStatic) {
+                    // pop original instance variable
+                    if (wide) {                       // this - val
+                        v.visitInsn(Opcodes.DUP2_X1); // val - this - val
+                        v.visitInsn(Opcodes.POP2);    // val - this
+                    } else {
+                        v.visitInsn(Opcodes.SWAP);    // val - this
+                    }
+
+                    v.visitInsn(Opcodes.POP);         // val
+                }
+
+                // push function below the value
+                v.visitLdcInsn(function);
+                if (wide) {                      // val - function
+                    v.visitInsn(Opcodes.DUP_X2); // function - val - function
+                    v.visitInsn(Opcodes.POP);    // function - val
+                } else {
+                    v.visitInsn(Opcodes.SWAP);   // function - val
+                }
+
+                // call the function and narrow the result
+                v.visitMethodInsn(Opcodes.INVOKEINTERFACE, Type.getType(function.getDescriptor()).getInternalName(), "adapt", PrimitiveAdapter.functionDescriptor(srcType, dstType), true);
+                switch (dstType.getSort()) {
+                    case Type.BYTE -> v.visitInsn(Opcodes.I2B);
+                    case Type.CHAR -> v.visitInsn(Opcodes.I2C);
+                    case Type.SHORT -> v.visitInsn(Opcodes.I2S);
+                    case Type.BOOLEAN -> {
+                        v.visitInsn(Opcodes.ICONST_1);
+                        v.visitInsn(Opcodes.IAND);
+                    }
+                }
+            }
+
+            // Set the destination type from where the tracked value ends up, the
+            // instruction itself is not intercepted. If the value was cast before
+            // only a parameterization of the cast type is accepted.
+            private void refineDstType(TrackedReturnValue rv, String type) {
+                rv.awaitingUnbox = false;
+                if (rv.castType == null || ASMUtil.erasure(type).equals(rv.castType))
+                    rv.dstType = type;
+            }
+
             @Override
             public boolean visitVarInsn(AnalysisContext ctx, int opcode, int varIndex, Type type, String signature) {
-                if (opcode == Opcodes.ASTORE && ctx.currentComputeStack().peek() instanceof TrackedReturnValue rv) {
-                    ctx.currentComputeStack().pop();
-                    ctx.currentComputeStack().push(new ComputeStack.LocalValue(varIndex, type, signature, null));
-
-                    rv.dstType = signature;
-                    return true;
+                if (opcode == Opcodes.ASTORE && ctx.currentComputeStack().peekOrNull() instanceof TrackedReturnValue rv) {
+                    refineDstType(rv, signature != null ? signature : type.getDescriptor());
                 }
 
                 return false;
@@ -189,11 +370,7 @@ public class AdapterAnalysisHook implements ClassAnalysisHook, Cleaner.Cleanable
             public boolean visitFieldInsn(AnalysisContext ctx, int opcode, ReferenceInfo fieldInfo) {
                 if ((opcode == Opcodes.PUTFIELD || opcode == Opcodes.PUTSTATIC) &&
                         ctx.currentComputeStack().peekOrNull() instanceof TrackedReturnValue rv) {
-                    if (opcode == Opcodes.PUTFIELD) ctx.currentComputeStack().pop();
-                    ctx.currentComputeStack().pop();
-
-                    rv.dstType = fieldInfo.signature() == null ? fieldInfo.descriptor() : fieldInfo.signature();
-                    return true;
+                    refineDstType(rv, fieldInfo.signature() == null ? fieldInfo.descriptor() : fieldInfo.signature());
                 }
 
                 return false;
@@ -202,10 +379,11 @@ public class AdapterAnalysisHook implements ClassAnalysisHook, Cleaner.Cleanable
             @Override
             public boolean visitInsn(AnalysisContext ctx, int opcode) {
                 if (opcode == Opcodes.ARETURN && ctx.currentComputeStack().peekOrNull() instanceof TrackedReturnValue rv) {
-                    ctx.currentComputeStack().pop();
-
-                    rv.dstType = ctx.currentMethod().type().getReturnType().getDescriptor();
-                    return true;
+                    // use the generic return type if present
+                    MethodNode methodNode = ASMUtil.findMethod(currAnalysis.classNode(), ctx.currentMethod());
+                    refineDstType(rv, methodNode != null && methodNode.signature != null ?
+                            ASMUtil.returnTypeSignature(methodNode.signature) :
+                            ctx.currentMethod().type().getReturnType().getDescriptor());
                 }
 
                 return false;
@@ -214,15 +392,27 @@ public class AdapterAnalysisHook implements ClassAnalysisHook, Cleaner.Cleanable
             @Override
             public boolean visitTypeInsn(AnalysisContext ctx, int opcode, Type type) {
                 if (opcode == Opcodes.CHECKCAST && ctx.currentComputeStack().peekOrNull() instanceof TrackedReturnValue rv) {
-                    ctx.currentComputeStack().pop();
-                    ctx.currentComputeStack().push(new ComputeStack.InstanceOf(type));
-
+                    // keep tracking the value so a generic signature
+                    // can still be found where it ends up
                     rv.dstType = type.getDescriptor();
+                    rv.castType = type;
+
+                    // a primitive source cast to a box type may be
+                    // unboxed next, in which case both are specialized
+                    rv.awaitingUnbox = rv.srcPrimitiveType != null && ASMUtil.unboxedType(type) != null;
+
+                    // keep the cast unless the value ends up primitive
+                    writer.addInsn(v -> {
+                        if (!isSpecialized(rv))
+                            v.visitTypeInsn(Opcodes.CHECKCAST, type.getInternalName());
+                    });
+
                     return true;
                 }
 
                 return false;
             }
+
         };
     }
 }
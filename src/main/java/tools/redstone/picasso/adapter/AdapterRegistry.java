@@ -2,12 +2,15 @@ package tools.redstone.picasso.adapter;
 
 import org.objectweb.asm.Type;
 import tools.redstone.picasso.util.asm.ASMUtil;
+import tools.redstone.picasso.util.data.CollectionUtil;
 
+import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Function;
 
-@SuppressWarnings({ "rawtypes" })
+@SuppressWarnings({ "rawtypes", "unchecked" })
 public interface AdapterRegistry {
 
     /**
@@ -68,4 +71,146 @@ public interface AdapterRegistry {
      */
     Function lazyAdaptingFunction(Class<?> aType, Class<?> bType);
 
+    /**
+     * Get the adapter for the given source and destination type.
+     *
+     * @param aCl Class A.
+     * @param bCl Class B.
+     * @throws IllegalArgumentException If there is no adapter for A -> B.
+     * @return The adapter.
+     */
+    default AdapterFunction requireAdapterFunction(Class<?> aCl, Class<?> bCl) {
+        AdapterFunction function = findAdapterFunction(aCl, bCl);
+        if (function == null)
+            throw new IllegalArgumentException("No adapter for " + aCl + " -> " + bCl);
+        return function;
+    }
+
+    // Resolve the function used to adapt each element once, if the source
+    // element class is not known the adapter is found per element class
+    private Function elementFunction(Class<?> srcElementClass, Class<?> dstElementClass) {
+        if (srcElementClass == Object.class)
+            return lazyAdaptingFunction(srcElementClass, dstElementClass);
+        AdapterFunction function = requireAdapterFunction(srcElementClass, dstElementClass);
+        return o -> o == null ? null : function.adapt(o);
+    }
+
+    private static List adaptAll(Collection<?> values, Function function) {
+        List<Object> list = new ArrayList<>(values.size());
+        for (Object value : values)
+            list.add(function.apply(value));
+        return list;
+    }
+
+    private static Object[] adaptArray(Object[] values, Class<?> dstElementClass, Function function) {
+        Object[] array = (Object[]) Array.newInstance(dstElementClass, values.length);
+        for (int i = 0, n = values.length; i < n; i++)
+            array[i] = function.apply(values[i]);
+        return array;
+    }
+
+    /**
+     * Adapt all values in the given collection into a new list,
+     * resolving the element adapter only once.
+     *
+     * @param values The source values.
+     * @param srcElementClass The source element class, or {@code Object} if unknown.
+     * @param dstElementClass The destination element class.
+     * @param <T> The destination element type.
+     * @throws IllegalArgumentException If there is no adapter for src -> dst.
+     * @return The list of adapted values.
+     */
+    default <T> List<T> adaptAll(Collection<?> values, Class<?> srcElementClass, Class<T> dstElementClass) {
+        return adaptAll(values, elementFunction(srcElementClass, dstElementClass));
+    }
+
+    /**
+     * Create a lazy view of the given list which adapts the elements
+     * on access, resolving the element adapter only once.
+     *
+     * @param values The source values.
+     * @param srcElementClass The source element class, or {@code Object} if unknown.
+     * @param dstElementClass The destination element class.
+     * @param <T> The destination element type.
+     * @throws IllegalArgumentException If there is no adapter for src -> dst.
+     * @return The view of adapted values.
+     */
+    default <T> List<T> adaptingView(List<?> values, Class<?> srcElementClass, Class<T> dstElementClass) {
+        return CollectionUtil.mapLazy(values, elementFunction(srcElementClass, dstElementClass));
+    }
+
+    /**
+     * Adapt all values in the given array into a new array of
+     * the destination element class, resolving the element adapter only once.
+     *
+     * @param values The source values.
+     * @param srcElementClass The source element class, or {@code Object} if unknown.
+     * @param dstElementClass The destination element class.
+     * @param <T> The destination element type.
+     * @throws IllegalArgumentException If there is no adapter for src -> dst.
+     * @return The array of adapted values.
+     */
+    default <T> T[] adaptArray(Object[] values, Class<?> srcElementClass, Class<T> dstElementClass) {
+        return (T[]) adaptArray(values, dstElementClass, elementFunction(srcElementClass, dstElementClass));
+    }
+
+    /**
+     * Create a function which adapts collections into new lists
+     * using {@link #adaptAll(Collection, Class, Class)}.
+     *
+     * @param srcElementClass The source element class, or {@code Object} if unknown.
+     * @param dstElementClass The destination element class.
+     * @return The function.
+     */
+    default Function collectionAdaptingFunction(Class<?> srcElementClass, Class<?> dstElementClass) {
+        final Function function = elementFunction(srcElementClass, dstElementClass);
+        return o -> o == null ? null : adaptAll((Collection<?>) o, function);
+    }
+
+    /**
+     * Create a function which adapts arrays into new arrays
+     * using {@link #adaptArray(Object[], Class, Class)}.
+     *
+     * @param srcElementClass The source element class, or {@code Object} if unknown.
+     * @param dstElementClass The destination element class.
+     * @return The function.
+     */
+    default Function arrayAdaptingFunction(Class<?> srcElementClass, Class<?> dstElementClass) {
+        final Function function = elementFunction(srcElementClass, dstElementClass);
+        return o -> o == null ? null : adaptArray((Object[]) o, dstElementClass, function);
+    }
+
+    /**
+     * Register the given primitive adapter to this registry.
+     *
+     * @param adapter The adapter.
+     */
+    void registerPrimitive(PrimitiveAdapter adapter);
+
+    /**
+     * Get the primitive adapter for exactly the given primitive
+     * source and destination class. Will return null if absent.
+     *
+     * @param srcClass The source class.
+     * @param dstClass The destination class.
+     * @return The adapter if present.
+     */
+    PrimitiveAdapter findPrimitiveAdapter(Class<?> srcClass, Class<?> dstClass);
+
+    /**
+     * Get the specialized function of the primitive adapter
+     * for the given source and destination class.
+     *
+     * @param srcClass The source class.
+     * @param dstClass The destination class.
+     * @throws IllegalArgumentException If there is no adapter for src -> dst.
+     * @return The function, an instance of {@link PrimitiveAdapter#functionInterface(Class, Class)}.
+     */
+    default Object primitiveAdaptingFunction(Class<?> srcClass, Class<?> dstClass) {
+        PrimitiveAdapter adapter = findPrimitiveAdapter(srcClass, dstClass);
+        if (adapter == null)
+            throw new IllegalArgumentException("No primitive adapter for " + srcClass + " -> " + dstClass);
+        return adapter.function();
+    }
+
 }
@@ -1,14 +1,15 @@
 package tools.redstone.picasso.adapter;
 
 import org.objectweb.asm.Type;
+import tools.redstone.picasso.metrics.PicassoEvents;
 import tools.redstone.picasso.util.ReflectUtil;
 import tools.redstone.picasso.util.asm.ASMUtil;
 import tools.redstone.picasso.util.data.Pair;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 /**
@@ -36,16 +37,81 @@ public final class DynamicAdapterRegistry implements AdapterRegistry {
         return adapter;
     }
 
-    private final Map<Pair<Class<?>, Class<?>>, AdapterFunction> cachedFunctions = new HashMap<>(); // The cache of found adapter functions
-    private final List<Adapter<?, ?>> adapters = new ArrayList<>();                                 // All registered bi-directional adapters
+    /** A mono-directional function of a registered adapter */
+    record IndexedFunction(Adapter<?, ?> adapter, Class<?> srcClass, Class<?> dstClass, Function function) implements AdapterFunction {
+        @Override
+        public Object adapt(Object in) {
+            return function.apply(in);
+        }
+    }
+
+    /**
+     * A chain of indexed functions fused into a single function,
+     * used when no single registered adapter converts between the types.
+     * The hops are applied in one loop instead of nesting a call per hop.
+     */
+    record FusedFunction(List<IndexedFunction> path, Class<?> srcClass, Class<?> dstClass, Function[] hops) implements AdapterFunction {
+        static FusedFunction of(List<IndexedFunction> path) {
+            Function[] hops = new Function[path.size()];
+            for (int i = 0; i < hops.length; i++)
+                hops[i] = path.get(i).function();
+            return new FusedFunction(List.copyOf(path), path.get(0).srcClass(), path.get(path.size() - 1).dstClass(), hops);
+        }
+
+        @Override
+        public Adapter<?, ?> adapter() {
+            return path.get(0).adapter();
+        }
+
+        @Override
+        public Object adapt(Object in) {
+            Object value = in;
+            for (Function hop : hops)
+                value = hop.apply(value);
+            return value;
+        }
+    }
+
+    // Cached in place of absent functions so failed searches are not repeated
+    private static final AdapterFunction NO_FUNCTION = new IndexedFunction(null, Object.class, Object.class, Function.identity());
+
+    private final Map<Pair<Class<?>, Class<?>>, AdapterFunction> cachedFunctions = new ConcurrentHashMap<>();    // The cache of found adapter functions, read concurrently by lazy adapting functions
+    private final Map<Class<?>, List<IndexedFunction>> functionsBySrcClass = new ConcurrentHashMap<>();          // All adapter functions indexed by their exact source class, in registration order
+    private final Map<Pair<Class<?>, Class<?>>, PrimitiveAdapter> primitiveAdapters = new ConcurrentHashMap<>(); // All registered primitive adapters by their exact src and dst class
+    private final LongAdder cacheHits = new LongAdder();                                                         // The amount of link time adapter function lookups answered by the cache
+    private final LongAdder cacheMisses = new LongAdder();                                                       // The amount of adapter function lookups which had to search
 
     /**
      * Register the given adapter to this registry.
      *
      * @param adapter The adapter.
      */
-    public void register(Adapter<?, ?> adapter) {
-        adapters.add(adapter);
+    public synchronized void register(Adapter<?, ?> adapter) {
+        Adapter<Object, Object> a = (Adapter<Object, Object>) adapter;
+        index(new IndexedFunction(adapter, a.aClass(), a.bClass(), (Function) a::toB));
+        index(new IndexedFunction(adapter, a.bClass(), a.aClass(), (Function) a::toA));
+
+        // a new adapter may be a closer fit
+        // for already resolved pairs
+        cachedFunctions.clear();
+    }
+
+    /**
+     * Get the amount of lookups through {@link #findAdapterFunction(Class, Class)}
+     * answered by the cache. The lookups of lazy adapting functions at runtime
+     * are not counted to keep contended writes off that path.
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /** Get the amount of lookups which had to search, at most once per pair between registrations */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    private void index(IndexedFunction function) {
+        functionsBySrcClass.computeIfAbsent(function.srcClass(), __ -> new CopyOnWriteArrayList<>()).add(function);
     }
 
     /**
@@ -64,7 +130,11 @@ public final class DynamicAdapterRegistry implements AdapterRegistry {
 
     /**
      * Get the adapter for the given source and destination type.
-     * Will return null if absent.
+     * If no single adapter converts between them the shortest chain
+     * of registered adapters is fused into one function. Paths are
+     * not precomputed, each pair is resolved on its first lookup and
+     * the result is cached until the next registration. Will return
+     * null if absent.
      *
      * @param aCl Class A.
      * @param bCl Class B.
@@ -73,90 +143,107 @@ public final class DynamicAdapterRegistry implements AdapterRegistry {
     @Override
     public AdapterFunction findAdapterFunction(Class<?> aCl, Class<?> bCl) {
         final Pair<Class<?>, Class<?>> pair = new Pair<>(aCl, bCl);
-
-        // check cache
         AdapterFunction func = cachedFunctions.get(pair);
         if (func != null)
-            return func;
+            cacheHits.increment();
+        else
+            func = cachedFunctions.computeIfAbsent(pair, this::resolve);
+        return func != NO_FUNCTION ? func : null;
+    }
 
-        func = findAdapterFunction0(aCl, bCl);
-        if (func != null) {
-            cachedFunctions.put(pair, func);
-        }
+    // Get the adapter function for the given pair from the cache without counting,
+    // used on the runtime path of lazy adapting functions
+    private AdapterFunction lookup(Class<?> aCl, Class<?> bCl) {
+        final Pair<Class<?>, Class<?>> pair = new Pair<>(aCl, bCl);
+        AdapterFunction func = cachedFunctions.get(pair);
+        if (func == null)
+            func = cachedFunctions.computeIfAbsent(pair, this::resolve);
+        return func != NO_FUNCTION ? func : null;
+    }
 
-        return func;
+    // Search the adapter function for the given pair, or the
+    // absent function if there is none
+    private AdapterFunction resolve(Pair<Class<?>, Class<?>> pair) {
+        cacheMisses.increment();
+        var event = PicassoEvents.ResolveAdapter.start();
+        AdapterFunction func = findAdapterFunction0(pair.first(), pair.second());
+        if (func == null)
+            func = findAdapterPath(pair.first(), pair.second());
+        event.finish(pair.first(), pair.second(), func != null);
+        return func != null ? func : NO_FUNCTION;
     }
 
+    // Walks the linearized supertypes of the source class, closest
+    // first, and returns the first indexed function which produces
+    // a value assignable to the destination class. Functions indexed
+    // under the same class are tried in registration order.
     private AdapterFunction findAdapterFunction0(Class<?> srcClass, Class<?> dstClass) {
-        // todo: find a better algorithm
-        //  like anything should be faster than this
-        //  absolute dogshit algorithm but its cached
-        //  so hopefully its not to slow
-
-        Function bestFit = null;                   // The best function to adapt from src -> dst
-        Adapter<?, ?> bestFitAdapter = null;       // The adapter for the best fit function
-        Class<?> bestFitSrc = null;                // The source type for the best fit function
-        Class<?> bestFitDst = null;                // The dest type for the best fit function
-        int bestFitSeparation = Integer.MAX_VALUE; // The separation from srcClass -> bestFitSrcClass
-
-        for (int i = 0, n = adapters.size(); i < n; i++) {
-            Adapter<Object, Object> adapter = (Adapter<Object, Object>) adapters.get(i);
-            Class<?> classA = adapter.aClass();
-            Class<?> classB = adapter.bClass();
-
-            // check for [A, B] = [ ? super SRC -> ? extends DST ]
-            if (classA.isAssignableFrom(srcClass) &&
-                dstClass.isAssignableFrom(classB)) {
-                int separation = ReflectUtil.findSuperclassSeparation(classA, srcClass);
-                if (separation < bestFitSeparation) {
-                    bestFit = adapter::toB;
-                    bestFitSeparation = separation;
-                    bestFitAdapter = adapter;
-                    bestFitSrc = classA;
-                    bestFitDst = classB;
-                }
-            }
+        for (Class<?> type : ReflectUtil.linearizedSupertypes(srcClass)) {
+            List<IndexedFunction> functions = functionsBySrcClass.get(type);
+            if (functions == null)
+                continue;
 
-            // check for [A, B] = [ ? extends DST <- ? super SRC ]
-            if (classB.isAssignableFrom(srcClass) &&
-                dstClass.isAssignableFrom(classA)) {
-                int separation = ReflectUtil.findSuperclassSeparation(classB, srcClass);
-                if (separation < bestFitSeparation) {
-                    bestFit = adapter::toA;
-                    bestFitSeparation = separation;
-                    bestFitAdapter = adapter;
-                    bestFitSrc = classB;
-                    bestFitDst = classA;
+            for (int i = 0, n = functions.size(); i < n; i++) {
+                IndexedFunction function = functions.get(i);
+                if (dstClass.isAssignableFrom(function.dstClass())) {
+                    return function;
                 }
             }
         }
 
-        // create AdapterFunction from best fit function
-        Function finalBestFit = bestFit;
-        Adapter<?, ?> finalBestFitAdapter = bestFitAdapter;
-        Class<?> finalBestFitSrc = bestFitSrc;
-        Class<?> finalBestFitDst = bestFitDst;
-        return bestFit == null ? null : new AdapterFunction() {
-            @Override
-            public Adapter<?, ?> adapter() {
-                return finalBestFitAdapter;
-            }
+        return null;
+    }
 
-            @Override
-            public Class<?> srcClass() {
-                return finalBestFitSrc;
-            }
+    // Breadth-first search over the adapter graph for the shortest
+    // chain of functions from the source to the destination class,
+    // the nodes being the destination classes of the functions. The
+    // found chain is fused into a single function.
+    private AdapterFunction findAdapterPath(Class<?> srcClass, Class<?> dstClass) {
+        Map<Class<?>, IndexedFunction> reachedBy = new HashMap<>(); // The function each class was first reached by
+        Map<Class<?>, Class<?>> reachedFrom = new HashMap<>();      // The class each class was first reached from
+        ArrayDeque<Class<?>> queue = new ArrayDeque<>();
+        reachedFrom.put(srcClass, null);
+        queue.add(srcClass);
 
-            @Override
-            public Class<?> dstClass() {
-                return finalBestFitDst;
-            }
+        while (!queue.isEmpty()) {
+            Class<?> current = queue.poll();
+            for (Class<?> type : ReflectUtil.linearizedSupertypes(current)) {
+                List<IndexedFunction> functions = functionsBySrcClass.get(type);
+                if (functions == null)
+                    continue;
+
+                for (int i = 0, n = functions.size(); i < n; i++) {
+                    IndexedFunction function = functions.get(i);
+                    Class<?> next = function.dstClass();
+                    if (reachedFrom.containsKey(next))
+                        continue;
+                    reachedBy.put(next, function);
+                    reachedFrom.put(next, current);
 
-            @Override
-            public Object adapt(Object in) {
-                return finalBestFit.apply(in);
+                    if (dstClass.isAssignableFrom(next)) {
+                        // walk back to the source to build the path
+                        LinkedList<IndexedFunction> path = new LinkedList<>();
+                        for (Class<?> c = next; c != srcClass; c = reachedFrom.get(c))
+                            path.addFirst(reachedBy.get(c));
+                        return FusedFunction.of(path);
+                    }
+
+                    queue.add(next);
+                }
             }
-        };
+        }
+
+        return null;
+    }
+
+    @Override
+    public void registerPrimitive(PrimitiveAdapter adapter) {
+        primitiveAdapters.put(new Pair<>(adapter.srcClass(), adapter.dstClass()), adapter);
+    }
+
+    @Override
+    public PrimitiveAdapter findPrimitiveAdapter(Class<?> srcClass, Class<?> dstClass) {
+        return primitiveAdapters.get(new Pair<>(srcClass, dstClass));
     }
 
     @Override
@@ -165,7 +252,7 @@ public final class DynamicAdapterRegistry implements AdapterRegistry {
             if (o == null)
                 return null; // cant adapt null
 
-            return findAdapterFunction(o.getClass(), bClass).adapt(o);
+            return lookup(o.getClass(), bClass).adapt(o);
         };
     }
 
@@ -0,0 +1,107 @@
+package tools.redstone.picasso.adapter;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Mono-directional adapter between two primitive types which
+ * does not box the values it adapts.
+ *
+ * The function is an instance of one of the specialized function
+ * interfaces declared in this class, chosen by the computational
+ * kinds of the source and destination type. Boolean, byte, char
+ * and short values are passed as ints, like on the JVM stack.
+ *
+ * @param srcClass The primitive source class.
+ * @param dstClass The primitive destination class.
+ * @param function The specialized function.
+ */
+public record PrimitiveAdapter(Class<?> srcClass, Class<?> dstClass, Object function) {
+
+    /* Specialized function interfaces */
+    @FunctionalInterface public interface IntToInt { int adapt(int in); }
+    @FunctionalInterface public interface IntToLong { long adapt(int in); }
+    @FunctionalInterface public interface IntToFloat { float adapt(int in); }
+    @FunctionalInterface public interface IntToDouble { double adapt(int in); }
+    @FunctionalInterface public interface LongToInt { int adapt(long in); }
+    @FunctionalInterface public interface LongToLong { long adapt(long in); }
+    @FunctionalInterface public interface LongToFloat { float adapt(long in); }
+    @FunctionalInterface public interface LongToDouble { double adapt(long in); }
+    @FunctionalInterface public interface FloatToInt { int adapt(float in); }
+    @FunctionalInterface public interface FloatToLong { long adapt(float in); }
+    @FunctionalInterface public interface FloatToFloat { float adapt(float in); }
+    @FunctionalInterface public interface FloatToDouble { double adapt(float in); }
+    @FunctionalInterface public interface DoubleToInt { int adapt(double in); }
+    @FunctionalInterface public interface DoubleToLong { long adapt(double in); }
+    @FunctionalInterface public interface DoubleToFloat { float adapt(double in); }
+    @FunctionalInterface public interface DoubleToDouble { double adapt(double in); }
+
+    // The function interfaces indexed by [src kind][dst kind]
+    private static final Class<?>[][] FUNCTION_INTERFACES = {
+            { IntToInt.class, IntToLong.class, IntToFloat.class, IntToDouble.class },
+            { LongToInt.class, LongToLong.class, LongToFloat.class, LongToDouble.class },
+            { FloatToInt.class, FloatToLong.class, FloatToFloat.class, FloatToDouble.class },
+            { DoubleToInt.class, DoubleToLong.class, DoubleToFloat.class, DoubleToDouble.class }
+    };
+
+    public PrimitiveAdapter {
+        if (!functionInterface(srcClass, dstClass).isInstance(function))
+            throw new IllegalArgumentException("Function for " + srcClass + " -> " + dstClass + " must implement " +
+                    functionInterface(srcClass, dstClass).getSimpleName());
+    }
+
+    public static PrimitiveAdapter of(Class<?> srcClass, Class<?> dstClass, Object function) {
+        return new PrimitiveAdapter(srcClass, dstClass, function);
+    }
+
+    /**
+     * Get the computational kind of the given primitive class,
+     * 0 = int, 1 = long, 2 = float and 3 = double.
+     *
+     * @param klass The primitive class.
+     * @throws IllegalArgumentException If the class is not a primitive value type.
+     * @return The kind.
+     */
+    public static int kind(Class<?> klass) {
+        if (klass == long.class) return 1;
+        if (klass == float.class) return 2;
+        if (klass == double.class) return 3;
+        if (klass == int.class || klass == boolean.class || klass == byte.class ||
+                klass == char.class || klass == short.class) return 0;
+        throw new IllegalArgumentException("Not a primitive value type: " + klass);
+    }
+
+    /**
+     * Get the specialized function interface for the given
+     * primitive source and destination classes.
+     *
+     * @param srcClass The source class.
+     * @param dstClass The destination class.
+     * @return The function interface.
+     */
+    public static Class<?> functionInterface(Class<?> srcClass, Class<?> dstClass) {
+        return FUNCTION_INTERFACES[kind(srcClass)][kind(dstClass)];
+    }
+
+    /**
+     * Get the descriptor of the {@code adapt} method on the function
+     * interface for the given primitive source and destination types.
+     *
+     * @param srcType The source type.
+     * @param dstType The destination type.
+     * @return The method descriptor.
+     */
+    public static String functionDescriptor(Type srcType, Type dstType) {
+        return "(" + kindType(srcType).getDescriptor() + ")" + kindType(dstType).getDescriptor();
+    }
+
+    // Get the type values of the given type are passed as
+    private static Type kindType(Type type) {
+        return switch (type.getSort()) {
+            case Type.LONG -> Type.LONG_TYPE;
+            case Type.FLOAT -> Type.FLOAT_TYPE;
+            case Type.DOUBLE -> Type.DOUBLE_TYPE;
+            default -> Type.INT_TYPE;
+        };
+    }
+
+}
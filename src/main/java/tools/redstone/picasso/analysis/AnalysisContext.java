@@ -1,6 +1,7 @@
 package tools.redstone.picasso.analysis;
 
 import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.metrics.AnalysisProfiler;
 import tools.redstone.picasso.util.asm.ComputeStack;
 
 import java.io.PrintStream;
@@ -27,6 +28,10 @@ public class AnalysisContext {
 
     // Leaves a method and updates the context to account for it
     protected void leaveMethod() {
+        AnalysisProfiler profiler = abstractionProvider.getAnalysisProfiler();
+        if (profiler != null)
+            profiler.leave(this);
+
         analysisStack.pop();
         computeStacks.pop();
     }
@@ -36,6 +41,10 @@ public class AnalysisContext {
                        ComputeStack computeStack) {
         analysisStack.push(info);
         computeStacks.push(computeStack);
+
+        AnalysisProfiler profiler = abstractionProvider.getAnalysisProfiler();
+        if (profiler != null)
+            profiler.enter(this, info);
     }
 
     // For debugging purposes
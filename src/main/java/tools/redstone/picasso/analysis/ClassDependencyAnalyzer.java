@@ -5,6 +5,9 @@ import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.metrics.HookCosts;
+import tools.redstone.picasso.metrics.PicassoEvents;
+import tools.redstone.picasso.metrics.RuntimeProbes;
 import tools.redstone.picasso.usage.NotImplementedException;
 import tools.redstone.picasso.usage.Usage;
 import tools.redstone.picasso.util.asm.ASMUtil;
@@ -47,11 +50,14 @@ public class ClassDependencyAnalyzer {
     static final String NAME_MethodInfo = TYPE_MethodInfo.getInternalName();
 
     protected final AbstractionProvider abstractionProvider;        // The abstraction manager
+    protected final HookCosts hookCosts;                            // The hook cost accounting of the manager
     protected String internalName;                                  // The internal name of this class
     protected String className;                                     // The public name of this class
     protected ClassReader classReader;                              // The class reader for the bytecode
     protected ClassNode classNode;                                  // The class node to be written
     public final List<ClassAnalysisHook> hooks = new ArrayList<>(); // The analysis hooks
+    protected boolean transforming = true;                          // Whether the class node is written as the class, false if only analyzed
+    protected final List<NotImplementedThrow> notImplementedThrows = new ArrayList<>(); // The runtime throws inserted into the class node
 
     protected ClassAnalysis classAnalysis = new ClassAnalysis(this); // The result of analysis
 
@@ -70,6 +76,7 @@ public class ClassDependencyAnalyzer {
     public ClassDependencyAnalyzer(AbstractionProvider provider,
                                    ClassReader classReader) {
         this.abstractionProvider = provider;
+        this.hookCosts = provider.getMetrics().hookCosts;
         if (classReader != null) {
             this.internalName = classReader.getClassName();
             this.className = internalName.replace('/', '.');
@@ -99,6 +106,62 @@ public class ClassDependencyAnalyzer {
                 "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Z)L" + NAME_MethodInfo + ";", false);
     }
 
+    /**
+     * A runtime throw of a {@link NotImplementedException} inserted for an unimplemented
+     * reference. Whether it is emitted is only known once all methods of the class were
+     * post-analyzed, it is counted and its probe registered then, so writing the class
+     * node, possibly more than once, only emits the bytecode.
+     */
+    protected class NotImplementedThrow extends InsnNode {
+        final ReferenceAnalysis methodAnalysis; // The analysis of the method the throw is inserted in
+        final ReferenceInfo ref;                // The unimplemented reference
+        final boolean probe;                    // Whether to count the throw with a runtime probe
+        boolean emitted;                        // Whether the method is required, so the throw is emitted
+        RuntimeProbes.Site site;                // The probe site if registered
+
+        NotImplementedThrow(ReferenceAnalysis methodAnalysis, ReferenceInfo ref, boolean probe) {
+            super(-1);
+            this.methodAnalysis = methodAnalysis;
+            this.ref = ref;
+            this.probe = probe;
+        }
+
+        // Decide whether the throw is emitted after post-analysis
+        void resolve() {
+            emitted = methodAnalysis.optionalReferenceNumber < 0;
+            if (!emitted || !transforming)
+                return;
+
+            abstractionProvider.getMetrics().notImplementedThrows.increment();
+            if (probe) {
+                site = abstractionProvider.getRuntimeProbes().register(RuntimeProbes.Kind.NOT_IMPLEMENTED, methodAnalysis.ref, ref.toString());
+            }
+        }
+
+        @Override
+        public void accept(MethodVisitor mv) {
+            if (!emitted)
+                return;
+            if (site != null) {
+                RuntimeProbes.visitIncrement(mv, site, RuntimeProbes.Counter.THROWN);
+            }
+
+            mv.visitTypeInsn(Opcodes.NEW, NAME_NotImplementedException);
+            mv.visitInsn(Opcodes.DUP);
+            if (ref.isField()) visitMakeFieldInfo(mv, ref.internalClassName(), ref.name(), ref.descriptor(), ref.isStatic());
+            else visitMakeMethodInfo(mv, ref.internalClassName(), ref.name(), ref.descriptor(), ref.isStatic());
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, NAME_NotImplementedException, "<init>", "(L" + NAME_MethodInfo + ";)V", false);
+            mv.visitInsn(Opcodes.ATHROW);
+        }
+    }
+
+    // Create and track a runtime throw for the given unimplemented reference
+    private NotImplementedThrow notImplementedThrow(ReferenceAnalysis methodAnalysis, ReferenceInfo ref) {
+        var insn = new NotImplementedThrow(methodAnalysis, ref, probing());
+        notImplementedThrows.add(insn);
+        return insn;
+    }
+
     /** Get a method analysis if present */
     public ReferenceAnalysis getReferenceAnalysis(ReferenceInfo info) {
         return abstractionProvider.getReferenceAnalysis(info);
@@ -110,9 +173,10 @@ public class ClassDependencyAnalyzer {
             if (!info.internalClassName().equals(this.internalName))
                 throw new AssertionError();
 
-            // check for cached
+            // check for cached, partial analyses like those
+            // of released analyzers are analyzed again
             var analysis = getReferenceAnalysis(info);
-            if (analysis != null && analysis.complete) {
+            if (analysis != null && analysis.complete && !analysis.partial) {
                 return analysis;
             }
 
@@ -124,16 +188,21 @@ public class ClassDependencyAnalyzer {
             // find method node
             MethodNode m = ASMUtil.findMethod(classNode, info.name(), info.descriptor());
             if (m == null) {
+                if (analysis != null && analysis.complete)
+                    return analysis;
+
                 // return partial
                 // todo: try to find in super class or something
                 return abstractionProvider.makePartial(info);
             }
 
             // create analysis, visit method and register result
+            var event = PicassoEvents.AnalyzeMethod.start();
             analysis = new ReferenceAnalysis(this, info);
             MethodVisitor v = methodVisitor(context, info, analysis, m);
             m.accept(v); // the visitor registers the result automatically
             v.visitEnd();
+            event.finish(info);
             return analysis;
         } catch (Exception e) {
             throw new RuntimeException("Error while analyzing local method " + info, e);
@@ -151,7 +220,7 @@ public class ClassDependencyAnalyzer {
     /** Check whether the given reference could be a dependency */
     public boolean isDependencyReference(AnalysisContext context, ReferenceInfo info) {
         for (var hook : this.hooks) {
-            var res = hook.isDependencyCandidate(context, info);
+            var res = hookCosts.timedHook(hook, "isDependencyCandidate", info, () -> hook.isDependencyCandidate(context, info));
             if (res == null) continue;
             return res;
         }
@@ -160,6 +229,37 @@ public class ClassDependencyAnalyzer {
         return false;
     }
 
+    /**
+     * Only analyze the class, as it was already defined and the class node
+     * is not written, so nothing is recorded for the transformed code.
+     *
+     * @return This.
+     */
+    public ClassDependencyAnalyzer analyzeOnly() {
+        this.transforming = false;
+        return this;
+    }
+
+    /** Whether the class node is written as the transformed class */
+    public boolean isTransforming() {
+        return transforming;
+    }
+
+    // Check whether to insert runtime probes, raising
+    // the class version for the dynamic constants if so
+    boolean probing() {
+        if (!transforming || abstractionProvider.getRuntimeProbes() == null || !abstractionProvider.isProbingNewClasses())
+            return false;
+        if ((classNode.version & 0xFFFF) < Opcodes.V11)
+            classNode.version = Opcodes.V11;
+        return true;
+    }
+
+    // Register a runtime probe site if probing
+    RuntimeProbes.Site probeSite(RuntimeProbes.Kind kind, ReferenceInfo method, String detail) {
+        return probing() ? abstractionProvider.getRuntimeProbes().register(kind, method, detail) : null;
+    }
+
     /**
      * Creates a method visitor which analyzes and transforms a local method.
      *
@@ -182,7 +282,9 @@ public class ClassDependencyAnalyzer {
         final ComputeStack computeStack = new ComputeStack();
 
         context.enteredMethod(currentMethodInfo, computeStack);
-        for (var hook : hooks) hook.enterMethod(context);
+        for (var hook : hooks) {
+            hookCosts.timedHook(hook, "enterMethod", currentMethodInfo, () -> hook.enterMethod(context));
+        }
 
         // create new method
         boolean isThisMethodStatic = Modifier.isStatic(oldMethod.access);
@@ -191,8 +293,10 @@ public class ClassDependencyAnalyzer {
         // create visitor hooks
         var mWriter = new MethodWriter(newMethod, newMethod);
         final List<ClassAnalysisHook.MethodVisitorHook> methodVisitorHooks = new ArrayList<>();
-        for (var hook : hooks)
-            CollectionUtil.addIfNotNull(methodVisitorHooks, hook.visitMethod(context, mWriter));
+        for (var hook : hooks) {
+            var visitorHook = hookCosts.timedHook(hook, "visitMethod", currentMethodInfo, () -> hook.visitMethod(context, mWriter));
+            CollectionUtil.addIfNotNull(methodVisitorHooks, hookCosts.timed(hook, visitorHook));
+        }
 
         // create method visitor
         var visitor = new ComputeStack.TrackingMethodVisitor<MethodWriter>(
@@ -294,6 +398,14 @@ public class ClassDependencyAnalyzer {
                         lambda.discard.value = true;
                     }
 
+                    // count the block being run or dropped
+                    if ("(Ljava/util/function/Supplier;)Ljava/util/Optional;".equals(descriptor) || "(Ljava/lang/Runnable;)Z".equals(descriptor)) {
+                        var site = probeSite(RuntimeProbes.Kind.OPTIONALLY, currentMethodInfo, lambda.methodInfo().toString());
+                        if (site != null) {
+                            RuntimeProbes.visitIncrement(parent, site, allImplemented ? RuntimeProbes.Counter.TAKEN : RuntimeProbes.Counter.FALLBACK);
+                        }
+                    }
+
                     if ("(Ljava/util/function/Supplier;)Ljava/util/Optional;".equals(descriptor)) {
                         // transform bytecode
                         if (!allImplemented) {
@@ -313,7 +425,7 @@ public class ClassDependencyAnalyzer {
                         return;
                     }
 
-                    if ("(Ljava/lang/Runnable;)B".equals(descriptor)) {
+                    if ("(Ljava/lang/Runnable;)Z".equals(descriptor)) {
                         // transform bytecode
                         if (!allImplemented) {
                             // the methods are not all implemented,
@@ -321,7 +433,7 @@ public class ClassDependencyAnalyzer {
                             parent.visitMethodInsn(
                                     Opcodes.INVOKESTATIC,
                                     NAME_InternalSubstituteMethods, "notPresentBoolean",
-                                    "(Ljava/lang/Runnable;)B", false
+                                    "(Ljava/lang/Runnable;)Z", false
                             );
                         } else {
                             // the methods are implemented, dont substitute
@@ -374,6 +486,12 @@ public class ClassDependencyAnalyzer {
                     // register switch
                     classAnalysis.dependencies.add(new SwitchDependency(chosenDependencies, optionalDependencies, chosen != null));
 
+                    // count whether the first or a later block is used
+                    var site = probeSite(RuntimeProbes.Kind.EITHER, currentMethodInfo, chosen != null ? "chosen " + i + " of " + lambdas.length : "none of " + lambdas.length);
+                    if (site != null) {
+                        RuntimeProbes.visitIncrement(parent, site, chosen != null && i == 0 ? RuntimeProbes.Counter.TAKEN : RuntimeProbes.Counter.FALLBACK);
+                    }
+
                     // replace method call
                     if (chosen != null) {
                         // push index into supplier array
@@ -410,18 +528,7 @@ public class ClassDependencyAnalyzer {
                     if (currentMethodAnalysis.optionalReferenceNumber <= 0) {
                         // insert runtime throw
                         if (!abstractionProvider.isImplemented(calledMethodInfo)) {
-                            addInsn(new InsnNode(-1) {
-                                @Override
-                                public void accept(MethodVisitor mv) {
-                                    if (currentMethodAnalysis.optionalReferenceNumber < 0) {
-                                        mv.visitTypeInsn(Opcodes.NEW, NAME_NotImplementedException);
-                                        mv.visitInsn(Opcodes.DUP);
-                                        visitMakeMethodInfo(mv, calledMethodInfo.internalClassName(), calledMethodInfo.name(), calledMethodInfo.descriptor(), calledMethodInfo.isStatic());
-                                        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, NAME_NotImplementedException, "<init>", "(L" + NAME_MethodInfo + ";)V", false);
-                                        mv.visitInsn(Opcodes.ATHROW);
-                                    }
-                                }
-                            });
+                            addInsn(notImplementedThrow(currentMethodAnalysis, calledMethodInfo));
                         }
                     }
 
@@ -478,18 +585,7 @@ public class ClassDependencyAnalyzer {
                         if (currentMethodAnalysis.optionalReferenceNumber <= 0) {
                             // insert runtime throw
                             if (!abstractionProvider.isImplemented(fieldInfo)) {
-                                addInsn(new InsnNode(-1) {
-                                    @Override
-                                    public void accept(MethodVisitor mv) {
-                                        if (currentMethodAnalysis.optionalReferenceNumber < 0) {
-                                            mv.visitTypeInsn(Opcodes.NEW, NAME_NotImplementedException);
-                                            mv.visitInsn(Opcodes.DUP);
-                                            visitMakeFieldInfo(mv, fieldInfo.internalClassName(), fieldInfo.name(), fieldInfo.descriptor(), fieldInfo.isStatic());
-                                            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, NAME_NotImplementedException, "<init>", "(L" + NAME_MethodInfo + ";)V", false);
-                                            mv.visitInsn(Opcodes.ATHROW);
-                                        }
-                                    }
-                                });
+                                addInsn(notImplementedThrow(currentMethodAnalysis, fieldInfo));
                             }
                         }
 
@@ -535,7 +631,9 @@ public class ClassDependencyAnalyzer {
                 endVisited = true;
 
                 for (var hook : methodVisitorHooks) hook.visitEnd();
-                for (var hook : hooks) hook.leaveMethod(context);
+                for (var hook : hooks) {
+                    hookCosts.timedHook(hook, "leaveMethod", currentMethodInfo, () -> hook.leaveMethod(context));
+                }
                 context.leaveMethod();
                 currentMethodAnalysis.complete = true;
 
@@ -557,6 +655,7 @@ public class ClassDependencyAnalyzer {
             return this;
 
         /* find dependencies */
+        final var event = PicassoEvents.AnalyzeClass.start();
         classAnalysis.running = true;
         classNode.accept(new ClassVisitor(ASMUtil.ASM_V) {
             @Override
@@ -565,7 +664,7 @@ public class ClassDependencyAnalyzer {
 
                 // check for cached
                 var analysis = getReferenceAnalysis(info);
-                if (analysis != null && analysis.complete)
+                if (analysis != null && analysis.complete && !analysis.partial)
                     return null;
 
                 // create analysis, visit method and register result
@@ -586,6 +685,11 @@ public class ClassDependencyAnalyzer {
                     analysis.postAnalyze();
                 }
 
+                // decide the inserted runtime throws
+                for (NotImplementedThrow insn : notImplementedThrows) {
+                    insn.resolve();
+                }
+
                 // filter dependencies
                 classAnalysis.dependencies = classAnalysis.dependencies.stream()
                         .map(d1 -> d1 instanceof ReferenceDependency d ? (d.optional() ? d : d.asOptional(publicReference(postAnalyzeCtx, d.info()).optionalReferenceNumber >= 0)) : d1)
@@ -616,6 +720,7 @@ public class ClassDependencyAnalyzer {
 
                 // mark complete
                 classAnalysis.completed = true;
+                event.finish(className);
             }
         });
 
@@ -629,4 +734,14 @@ public class ClassDependencyAnalyzer {
     public ClassNode getClassNode() {
         return classNode;
     }
+
+    /**
+     * Drop the class node and reader of this analyzer once the transformed
+     * class was written, the class analysis stays available.
+     */
+    public void release() {
+        this.classNode = null;
+        this.classReader = null;
+        this.notImplementedThrows.clear();
+    }
 }
@@ -0,0 +1,64 @@
+package tools.redstone.picasso.analysis;
+
+import tools.redstone.picasso.AbstractionProvider;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compact, immutable result of the analysis of a class, kept in
+ * place of the analyzer once the class was defined so the class node
+ * and the reference analysis graph can be collected.
+ *
+ * @see AbstractionProvider#releaseAnalyzers(boolean)
+ */
+public record ClassSummary(String className,
+                           List<Dependency> dependencies,
+                           Map<ReferenceInfo, MethodSummary> methods) {
+
+    /** The result of the analysis of a method in the class */
+    public record MethodSummary(ReferenceInfo ref, List<ReferenceInfo> requiredDependencies, int optionalReferenceNumber) {
+        public MethodSummary {
+            requiredDependencies = List.copyOf(requiredDependencies);
+        }
+    }
+
+    public ClassSummary {
+        dependencies = List.copyOf(dependencies);
+        methods = Map.copyOf(methods);
+    }
+
+    /**
+     * Summarize the given completed class analysis.
+     *
+     * @param analysis The analysis.
+     * @return The summary.
+     */
+    public static ClassSummary of(ClassAnalysis analysis) {
+        if (!analysis.completed)
+            throw new IllegalStateException("Analysis of " + analysis.analyzer.className + " is not completed");
+
+        Map<ReferenceInfo, MethodSummary> methods = new HashMap<>();
+        analysis.analyzedMethods.forEach((ref, refAnalysis) -> methods.put(ref,
+                new MethodSummary(ref, refAnalysis.requiredDependencies, refAnalysis.optionalReferenceNumber)));
+        return new ClassSummary(analysis.analyzer.className, analysis.dependencies, methods);
+    }
+
+    // Check whether all direct and switch dependencies are implemented
+    public boolean areAllImplemented(AbstractionProvider provider) {
+        for (Dependency dep : dependencies)
+            if (!dep.isImplemented(provider))
+                return false;
+        return true;
+    }
+
+    /** Estimate the amount of retained references, used for the summary budget */
+    public int weight() {
+        int weight = 1 + dependencies.size();
+        for (MethodSummary method : methods.values())
+            weight += 1 + method.requiredDependencies.size();
+        return weight;
+    }
+
+}
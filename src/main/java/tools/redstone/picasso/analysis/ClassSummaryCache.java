@@ -0,0 +1,114 @@
+package tools.redstone.picasso.analysis;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores class summaries by class name. Summaries are strongly
+ * retained in least recently used order until their total weight
+ * exceeds the budget, the least recently used summaries are then
+ * only softly retained so the garbage collector may drop them.
+ *
+ * @see ClassSummary#weight()
+ */
+public final class ClassSummaryCache {
+
+    final LinkedHashMap<String, ClassSummary> strong = new LinkedHashMap<>(16, 0.75f, true); // The strongly retained summaries in access order
+    final Map<String, SoftReference<ClassSummary>> soft = new HashMap<>();                    // The softly retained summaries evicted from the budget
+    long budget = -1;                                                                         // The maximum total weight of strongly retained summaries, or -1 for no limit
+    long weight = 0;                                                                          // The total weight of strongly retained summaries
+
+    public synchronized ClassSummaryCache setBudget(long budget) {
+        this.budget = budget;
+        evict();
+        return this;
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get the summary for the given class name.
+     *
+     * @param className The class name.
+     * @return The summary or null if absent or collected.
+     */
+    public synchronized ClassSummary get(String className) {
+        ClassSummary summary = strong.get(className);
+        if (summary != null)
+            return summary;
+
+        SoftReference<ClassSummary> ref = soft.get(className);
+        if (ref == null)
+            return null;
+        summary = ref.get();
+        if (summary == null) {
+            soft.remove(className);
+            return null;
+        }
+
+        // accessed again, retain strongly
+        soft.remove(className);
+        put(className, summary);
+        return summary;
+    }
+
+    public synchronized void put(String className, ClassSummary summary) {
+        ClassSummary old = strong.put(className, summary);
+        if (old != null)
+            weight -= old.weight();
+        soft.remove(className);
+        weight += summary.weight();
+        evict();
+    }
+
+    public synchronized void remove(String className) {
+        ClassSummary old = strong.remove(className);
+        if (old != null)
+            weight -= old.weight();
+        soft.remove(className);
+    }
+
+    /**
+     * Drop the softly retained summaries, as the garbage collector
+     * may do under memory pressure.
+     */
+    public synchronized void clearSoft() {
+        soft.clear();
+    }
+
+    /** Get the amount of summaries which are strongly retained */
+    public synchronized int strongSize() {
+        return strong.size();
+    }
+
+    // Move the least recently used summaries to
+    // the soft map until within the budget
+    private void evict() {
+        if (budget < 0)
+            return;
+
+        if (weight <= budget)
+            return;
+
+        Iterator<Map.Entry<String, ClassSummary>> iterator = strong.entrySet().iterator();
+        while (weight > budget && iterator.hasNext()) {
+            var entry = iterator.next();
+            iterator.remove();
+            weight -= entry.getValue().weight();
+            soft.put(entry.getKey(), new SoftReference<>(entry.getValue()));
+        }
+
+        // drop cleared references
+        soft.values().removeIf(ref -> ref.get() == null);
+    }
+
+}
@@ -65,14 +65,14 @@ public class ReferenceAnalysis {
     }
 
     // Checked refHooks.add
-    private void addRefHook(ClassAnalysisHook hook, Supplier<ClassAnalysisHook.ReferenceHook> supplier) {
+    private void addRefHook(ClassAnalysisHook hook, String callback, Supplier<ClassAnalysisHook.ReferenceHook> supplier) {
         // create new ref hook
-        addIfNotNull(refHooks, supplier.get());
+        addIfNotNull(refHooks, analyzer.hookCosts.timedHook(hook, callback, ref, supplier::get));
     }
 
     // Register and propagate that this method is part of an optional block
     public void referenceOptional(AnalysisContext context) {
-        for (var hook : analyzer.hooks) addRefHook(hook, () -> hook.optionalReference(context, this));
+        for (var hook : analyzer.hooks) addRefHook(hook, "optionalReference", () -> hook.optionalReference(context, this));
         for (var refHook : refHooks) refHook.optionalReference(context);
 
         this.optionalReferenceNumber += 2;
@@ -83,7 +83,7 @@ public class ReferenceAnalysis {
 
     // Register and propagate that this method is required
     public void referenceRequired(AnalysisContext context) {
-        for (var hook : analyzer.hooks) addRefHook(hook, () -> hook.requiredReference(context, this));
+        for (var hook : analyzer.hooks) addRefHook(hook, "requiredReference", () -> hook.requiredReference(context, this));
         for (var refHook : refHooks) refHook.requiredReference(context);
 
         this.optionalReferenceNumber -= 1;
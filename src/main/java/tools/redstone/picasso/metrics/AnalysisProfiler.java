@@ -0,0 +1,162 @@
+package tools.redstone.picasso.metrics;
+
+import tools.redstone.picasso.analysis.AnalysisContext;
+import tools.redstone.picasso.analysis.ReferenceInfo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the time spent analyzing each method by the path of methods
+ * being analyzed, like the analysis stack of the context but across
+ * contexts, so classes transformed while analyzing another class are
+ * attributed to it.
+ *
+ * The self time of every path is written in the folded stack format
+ * used by flame graph tools, and summed per class into a cost ranking.
+ *
+ * @see tools.redstone.picasso.AbstractionProvider#setAnalysisProfiler(AnalysisProfiler)
+ */
+public final class AnalysisProfiler {
+
+    /** The analysis cost of a class */
+    public record ClassCost(String className, long selfNanos, long methodsAnalyzed) { }
+
+    /** A method being analyzed on the current thread */
+    static final class Frame {
+        final AnalysisContext context; // The context the method is analyzed in
+        final int depth;               // The depth of the method on the analysis stack of the context
+        final String path;             // The folded path of this frame
+        final String className;        // The class of the method
+        final long start;              // The time the frame was entered
+        long childNanos;               // The time spent in nested frames
+
+        Frame(AnalysisContext context, int depth, String path, String className, long start) {
+            this.context = context;
+            this.depth = depth;
+            this.path = path;
+            this.className = className;
+            this.start = start;
+        }
+    }
+
+    final ThreadLocal<ArrayDeque<Frame>> frames = ThreadLocal.withInitial(ArrayDeque::new); // The frames being analyzed per thread
+    final Map<String, LongAdder> selfNanosByPath = new ConcurrentHashMap<>();                // The self time by folded path
+    final Map<String, LongAdder> selfNanosByClass = new ConcurrentHashMap<>();               // The self time by class name
+    final Map<String, LongAdder> methodsByClass = new ConcurrentHashMap<>();                 // The amount of analyzed methods by class name
+
+    // Get the name of the given method in a folded path,
+    // which may not contain separators or spaces
+    static String frameName(ReferenceInfo ref) {
+        return (ref.className() + "." + ref.name() + ref.descriptor()).replace(';', ',').replace(' ', '_');
+    }
+
+    /**
+     * Called when the given context entered the given method.
+     *
+     * @param context The context.
+     * @param ref The method.
+     */
+    public void enter(AnalysisContext context, ReferenceInfo ref) {
+        ArrayDeque<Frame> stack = frames.get();
+        int depth = context.analysisStack.size();
+
+        // drop frames of the context which were left by an exception
+        while (!stack.isEmpty() && stack.peek().context == context && stack.peek().depth >= depth)
+            stack.pop();
+
+        Frame parent = stack.peek();
+        String name = frameName(ref);
+        stack.push(new Frame(context, depth, parent != null ? parent.path + ";" + name : name, ref.className(), System.nanoTime()));
+    }
+
+    /**
+     * Called when the given context is about to leave the current method.
+     *
+     * @param context The context.
+     */
+    public void leave(AnalysisContext context) {
+        ArrayDeque<Frame> stack = frames.get();
+        int depth = context.analysisStack.size();
+        Frame frame = null;
+        for (Frame f : stack) {
+            if (f.context == context && f.depth == depth) {
+                frame = f;
+                break;
+            }
+        }
+
+        if (frame == null)
+            return; // not entered while profiling
+
+        // drop frames above it which were left by an exception
+        while (stack.pop() != frame);
+
+        long total = System.nanoTime() - frame.start;
+        long self = Math.max(0, total - frame.childNanos);
+        selfNanosByPath.computeIfAbsent(frame.path, __ -> new LongAdder()).add(self);
+        selfNanosByClass.computeIfAbsent(frame.className, __ -> new LongAdder()).add(self);
+        methodsByClass.computeIfAbsent(frame.className, __ -> new LongAdder()).increment();
+
+        Frame parent = stack.peek();
+        if (parent != null)
+            parent.childNanos += total;
+    }
+
+    /**
+     * Get the classes by their total self time, most expensive first.
+     *
+     * @param limit The maximum amount of classes.
+     * @return The ranking.
+     */
+    public List<ClassCost> getClassCosts(int limit) {
+        List<ClassCost> costs = new ArrayList<>();
+        selfNanosByClass.forEach((className, nanos) -> {
+            LongAdder methods = methodsByClass.get(className);
+            costs.add(new ClassCost(className, nanos.sum(), methods != null ? methods.sum() : 0));
+        });
+
+        costs.sort(Comparator.comparingLong(ClassCost::selfNanos).reversed());
+        return costs.size() > limit ? costs.subList(0, limit) : costs;
+    }
+
+    /**
+     * Write the self time of every path in microseconds in the folded
+     * stack format, one {@code frame;frame;frame micros} line per path,
+     * rounded up so no recorded path is left out.
+     *
+     * @param writer The writer.
+     */
+    public void writeFolded(Writer writer) throws IOException {
+        for (var entry : new TreeMap<>(selfNanosByPath).entrySet()) {
+            long nanos = entry.getValue().sum();
+            if (nanos == 0)
+                continue;
+            long micros = (nanos + 999) / 1000;
+            writer.write(entry.getKey());
+            writer.write(' ');
+            writer.write(Long.toString(micros));
+            writer.write('\n');
+        }
+    }
+
+    public void writeFolded(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writeFolded(writer);
+        }
+    }
+
+    public void reset() {
+        selfNanosByPath.clear();
+        selfNanosByClass.clear();
+        methodsByClass.clear();
+    }
+
+}
@@ -0,0 +1,339 @@
+package tools.redstone.picasso.metrics;
+
+import org.objectweb.asm.Type;
+import tools.redstone.picasso.analysis.AnalysisContext;
+import tools.redstone.picasso.analysis.ClassAnalysisHook;
+import tools.redstone.picasso.analysis.ReferenceInfo;
+import tools.redstone.picasso.util.functional.ThrowingSupplier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * The invocation count and time spent per analysis hook and callback,
+ * including the instruction callbacks of method visitor hooks.
+ *
+ * A warning budget can be set, a callback taking longer than the budget
+ * is counted and reported to the warning handler once per hook and
+ * callback, so a slow hook is named without flooding the handler.
+ *
+ * @see ProviderMetrics#hookCosts
+ */
+public final class HookCosts {
+
+    /** A callback which took longer than the budget */
+    public record Warning(String hookClass, String callback, long nanos, long budgetNanos, Object subject) {
+        @Override
+        public String toString() {
+            return "Hook " + hookClass + " took " + (nanos / 1_000) + "us in " + callback + " on " + subject +
+                    ", the budget is " + (budgetNanos / 1_000) + "us";
+        }
+    }
+
+    /** The accumulated cost of one callback of one hook */
+    static final class Cost {
+        final String hookClass;                                                   // The class name of the hook
+        final String callback;                                                    // The name of the callback
+        final LongAdder calls = new LongAdder();                                  // The amount of invocations
+        final LongAdder nanos = new LongAdder();                                  // The total time spent
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);       // The longest invocation
+        final LongAdder overBudget = new LongAdder();                             // The invocations which exceeded the budget
+        volatile boolean warned;                                                  // Whether a warning was reported
+
+        Cost(String hookClass, String callback) {
+            this.hookClass = hookClass;
+            this.callback = callback;
+        }
+
+        void reset() {
+            calls.reset();
+            nanos.reset();
+            maxNanos.reset();
+            overBudget.reset();
+            warned = false;
+        }
+    }
+
+    /** The cost of one callback of one hook at some point */
+    public static final class Snapshot {
+        final String hookClass;
+        final String callback;
+        final long calls;
+        final long totalNanos;
+        final long maxNanos;
+        final long overBudget;
+
+        public Snapshot(String hookClass, String callback, long calls, long totalNanos, long maxNanos, long overBudget) {
+            this.hookClass = hookClass;
+            this.callback = callback;
+            this.calls = calls;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.overBudget = overBudget;
+        }
+
+        public String getHookClass() {
+            return hookClass;
+        }
+
+        public String getCallback() {
+            return callback;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public double getTotalMillis() {
+            return totalNanos / 1_000_000d;
+        }
+
+        public double getMeanMicros() {
+            return calls == 0 ? 0 : totalNanos / 1_000d / calls;
+        }
+
+        public double getMaxMicros() {
+            return maxNanos / 1_000d;
+        }
+
+        public long getOverBudget() {
+            return overBudget;
+        }
+
+        @Override
+        public String toString() {
+            return hookClass + "." + callback + ": calls=" + calls + " total=" + getTotalMillis() + "ms mean=" + getMeanMicros() + "us max=" + getMaxMicros() + "us";
+        }
+    }
+
+    static final System.Logger LOGGER = System.getLogger(HookCosts.class.getName());
+
+    final Map<Object, Map<String, Cost>> costsByHook = new ConcurrentHashMap<>(); // The costs by hook instance and callback name
+    volatile boolean enabled = true;                                               // Whether callbacks are timed
+    volatile long budgetNanos = -1;                                                // The warning budget per invocation, negative if none
+    volatile Consumer<Warning> warningHandler = warning -> LOGGER.log(System.Logger.Level.WARNING, warning.toString());
+
+    public HookCosts setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set the time a single callback may take before it is reported
+     * to the warning handler, which logs a warning by default.
+     *
+     * @param budgetNanos The budget in nanoseconds or a negative value to disable.
+     * @param warningHandler The handler or null to keep the current one.
+     * @return This.
+     */
+    public HookCosts setWarningBudget(long budgetNanos, Consumer<Warning> warningHandler) {
+        this.budgetNanos = budgetNanos;
+        if (warningHandler != null)
+            this.warningHandler = warningHandler;
+        return this;
+    }
+
+    /**
+     * Get the time to pass to {@link #record(Object, String, Object, long)}
+     * after the callback has returned.
+     *
+     * @return The start time or 0 if disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record an invocation of the given callback of the given hook.
+     *
+     * @param hook The hook.
+     * @param callback The name of the callback.
+     * @param subject The reference or class the callback was invoked for, used in warnings.
+     * @param start The time returned by {@link #start()}.
+     */
+    public void record(Object hook, String callback, Object subject, long start) {
+        if (start == 0)
+            return;
+        record(cost(hook, callback), subject, start);
+    }
+
+    // Get or create the cost of the given callback of the given hook
+    Cost cost(Object hook, String callback) {
+        return costsByHook.computeIfAbsent(hook, __ -> new ConcurrentHashMap<>())
+                .computeIfAbsent(callback, __ -> new Cost(hook.getClass().getName(), callback));
+    }
+
+    // Record an invocation of the callback of the given cost
+    void record(Cost cost, Object subject, long start) {
+        if (start == 0)
+            return;
+        long nanos = System.nanoTime() - start;
+        cost.calls.increment();
+        cost.nanos.add(nanos);
+        cost.maxNanos.accumulate(nanos);
+
+        // check budget
+        long budget = budgetNanos;
+        if (budget >= 0 && nanos > budget) {
+            cost.overBudget.increment();
+            if (!cost.warned) {
+                cost.warned = true;
+                warningHandler.accept(new Warning(cost.hookClass, cost.callback, nanos, budget, subject));
+            }
+        }
+    }
+
+    /**
+     * Call the given callback of the given hook, recording its cost
+     * and a {@link PicassoEvents.HookCallback} event.
+     *
+     * @param hook The hook.
+     * @param callback The name of the callback.
+     * @param subject The reference or class the callback is invoked for.
+     * @param call The invocation of the callback.
+     * @return The result of the callback.
+     * @throws E Any exception the callback throws.
+     */
+    public <T, E extends Throwable> T timedHook(Object hook, String callback, Object subject, ThrowingSupplier<T, E> call) throws E {
+        var event = PicassoEvents.HookCallback.start();
+        long t = start();
+        try {
+            return call.get();
+        } finally {
+            record(hook, callback, subject, t);
+            event.finish(hook, callback, subject);
+        }
+    }
+
+    /**
+     * Call the given callback of the given hook, recording its cost
+     * and a {@link PicassoEvents.HookCallback} event.
+     *
+     * @see #timedHook(Object, String, Object, ThrowingSupplier)
+     */
+    public void timedHook(Object hook, String callback, Object subject, Runnable call) {
+        var event = PicassoEvents.HookCallback.start();
+        long t = start();
+        try {
+            call.run();
+        } finally {
+            record(hook, callback, subject, t);
+            event.finish(hook, callback, subject);
+        }
+    }
+
+    /**
+     * Wrap the given method visitor hook to record the instruction
+     * callbacks as callbacks of the given hook. The costs are resolved
+     * once here, so an instruction callback only reads the time and
+     * updates the counters.
+     *
+     * @param hook The hook which created the visitor hook.
+     * @param visitorHook The visitor hook, may be null.
+     * @return The wrapped visitor hook, or the given one if disabled or null.
+     */
+    public ClassAnalysisHook.MethodVisitorHook timed(ClassAnalysisHook hook, ClassAnalysisHook.MethodVisitorHook visitorHook) {
+        if (visitorHook == null || !enabled)
+            return visitorHook;
+
+        final Cost methodInsn = cost(hook, "visitMethodInsn");
+        final Cost insn = cost(hook, "visitInsn");
+        final Cost typeInsn = cost(hook, "visitTypeInsn");
+        final Cost varInsn = cost(hook, "visitVarInsn");
+        final Cost fieldInsn = cost(hook, "visitFieldInsn");
+        final Cost end = cost(hook, "visitEnd");
+        return new ClassAnalysisHook.MethodVisitorHook() {
+            @Override
+            public boolean visitMethodInsn(AnalysisContext ctx, int opcode, ReferenceInfo info) {
+                long t = start();
+                boolean res = visitorHook.visitMethodInsn(ctx, opcode, info);
+                record(methodInsn, info, t);
+                return res;
+            }
+
+            @Override
+            public boolean visitInsn(AnalysisContext ctx, int opcode) {
+                long t = start();
+                boolean res = visitorHook.visitInsn(ctx, opcode);
+                record(insn, opcode, t);
+                return res;
+            }
+
+            @Override
+            public boolean visitTypeInsn(AnalysisContext ctx, int opcode, Type type) {
+                long t = start();
+                boolean res = visitorHook.visitTypeInsn(ctx, opcode, type);
+                record(typeInsn, type, t);
+                return res;
+            }
+
+            @Override
+            public boolean visitVarInsn(AnalysisContext ctx, int opcode, int varIndex, Type type, String signature) {
+                long t = start();
+                boolean res = visitorHook.visitVarInsn(ctx, opcode, varIndex, type, signature);
+                record(varInsn, varIndex, t);
+                return res;
+            }
+
+            @Override
+            public boolean visitFieldInsn(AnalysisContext ctx, int opcode, ReferenceInfo fieldInfo) {
+                long t = start();
+                boolean res = visitorHook.visitFieldInsn(ctx, opcode, fieldInfo);
+                record(fieldInsn, fieldInfo, t);
+                return res;
+            }
+
+            @Override
+            public void visitEnd() {
+                long t = start();
+                visitorHook.visitEnd();
+                record(end, null, t);
+            }
+        };
+    }
+
+    /** Get the costs of all hooks and callbacks, most expensive first */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> list = new ArrayList<>();
+        for (Map<String, Cost> costs : costsByHook.values()) {
+            for (Cost cost : costs.values()) {
+                if (cost.calls.sum() == 0)
+                    continue;
+                list.add(new Snapshot(cost.hookClass, cost.callback, cost.calls.sum(), cost.nanos.sum(), cost.maxNanos.get(), cost.overBudget.sum()));
+            }
+        }
+
+        list.sort(Comparator.comparingLong((Snapshot s) -> s.totalNanos).reversed());
+        return list;
+    }
+
+    /** Get the total time spent in the given hook */
+    public long getTotalNanos(Object hook) {
+        Map<String, Cost> costs = costsByHook.get(hook);
+        if (costs == null)
+            return 0;
+        long nanos = 0;
+        for (Cost cost : costs.values())
+            nanos += cost.nanos.sum();
+        return nanos;
+    }
+
+    // the costs are reset in place as
+    // timed visitor hooks hold on to them
+    public void reset() {
+        for (Map<String, Cost> costs : costsByHook.values())
+            for (Cost cost : costs.values())
+                cost.reset();
+    }
+
+}
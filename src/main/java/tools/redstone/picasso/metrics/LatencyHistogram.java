@@ -0,0 +1,140 @@
+package tools.redstone.picasso.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Durations are
+ * counted in power of two buckets, so percentiles are estimated to
+ * within a factor of two, which is enough to tell slow phases apart.
+ */
+public final class LatencyHistogram {
+
+    static final int BUCKETS = 64;
+
+    final AtomicLongArray buckets = new AtomicLongArray(BUCKETS); // The counts by the highest set bit of the duration
+    final LongAdder count = new LongAdder();                      // The amount of recorded durations
+    final LongAdder total = new LongAdder();                      // The sum of all recorded durations
+    final LongAccumulator max = new LongAccumulator(Math::max, 0); // The longest recorded duration
+
+    /**
+     * Record the given duration.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos) - (nanos == 0 ? 0 : 1));
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /** Record the time elapsed since the given {@link System#nanoTime()} */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalNanos() {
+        return total.sum();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Estimate the given percentile of the recorded durations, as the
+     * upper bound of the bucket the percentile falls in.
+     *
+     * @param percentile The percentile, from 0 to 1.
+     * @return The duration in nanoseconds or 0 if nothing was recorded.
+     */
+    public long percentileNanos(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            n += counts[i] = buckets.get(i);
+        if (n == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(percentile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] != 0)
+                return Math.min(i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i + 1) - 1, maxNanos());
+        }
+
+        return maxNanos();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            buckets.set(i, 0);
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    /** Take a snapshot of this histogram for reporting */
+    public Snapshot snapshot() {
+        return new Snapshot(count(), totalNanos(), percentileNanos(0.5), percentileNanos(0.99), maxNanos());
+    }
+
+    /**
+     * A snapshot of a histogram, with getters so it is
+     * mapped to composite data by JMX.
+     */
+    public static final class Snapshot {
+        final long count;
+        final long totalNanos;
+        final long p50Nanos;
+        final long p99Nanos;
+        final long maxNanos;
+
+        public Snapshot(long count, long totalNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double getTotalMillis() {
+            return totalNanos / 1_000_000d;
+        }
+
+        public double getP50Micros() {
+            return p50Nanos / 1_000d;
+        }
+
+        public double getP99Micros() {
+            return p99Nanos / 1_000d;
+        }
+
+        public double getMaxMicros() {
+            return maxNanos / 1_000d;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " total=" + getTotalMillis() + "ms p50=" + getP50Micros() + "us p99=" + getP99Micros() + "us max=" + getMaxMicros() + "us";
+        }
+    }
+
+}
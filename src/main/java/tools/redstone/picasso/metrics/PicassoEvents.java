@@ -0,0 +1,179 @@
+package tools.redstone.picasso.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * The Java Flight Recorder events of the class loading pipeline. The
+ * events are cheap while not recorded, their duration is measured
+ * between construction and {@code finish}.
+ *
+ * Hook callbacks are recorded above a threshold of one millisecond
+ * by default, as they are frequent and usually fast.
+ */
+public final class PicassoEvents {
+
+    private PicassoEvents() { }
+
+    static final String CATEGORY = "Picasso";
+
+    /** Creating an analyzer, which includes parsing the class node */
+    @Name("tools.redstone.picasso.AnalyzerCreated")
+    @Label("Analyzer Created")
+    @Category({ CATEGORY, "Analysis" })
+    public static final class AnalyzerCreated extends Event {
+        @Label("Class Name")
+        String className;
+
+        public static AnalyzerCreated start() {
+            var event = new AnalyzerCreated();
+            event.begin();
+            return event;
+        }
+
+        public void finish(String className) {
+            end();
+            if (shouldCommit()) {
+                this.className = className;
+                commit();
+            }
+        }
+    }
+
+    /** Analyzing and transforming a class */
+    @Name("tools.redstone.picasso.AnalyzeClass")
+    @Label("Analyze Class")
+    @Category({ CATEGORY, "Analysis" })
+    public static final class AnalyzeClass extends Event {
+        @Label("Class Name")
+        String className;
+
+        public static AnalyzeClass start() {
+            var event = new AnalyzeClass();
+            event.begin();
+            return event;
+        }
+
+        public void finish(String className) {
+            end();
+            if (shouldCommit()) {
+                this.className = className;
+                commit();
+            }
+        }
+    }
+
+    /** Analyzing and transforming a single method on demand */
+    @Name("tools.redstone.picasso.AnalyzeMethod")
+    @Label("Analyze Method")
+    @Category({ CATEGORY, "Analysis" })
+    public static final class AnalyzeMethod extends Event {
+        @Label("Reference")
+        String reference;
+
+        public static AnalyzeMethod start() {
+            var event = new AnalyzeMethod();
+            event.begin();
+            return event;
+        }
+
+        public void finish(Object reference) {
+            end();
+            if (shouldCommit()) {
+                this.reference = String.valueOf(reference);
+                commit();
+            }
+        }
+    }
+
+    /** Defining a transformed class in the transforming loader */
+    @Name("tools.redstone.picasso.DefineClass")
+    @Label("Define Class")
+    @Category({ CATEGORY, "Class Loading" })
+    public static final class DefineClass extends Event {
+        @Label("Class Name")
+        String className;
+
+        @Label("Size")
+        @DataAmount
+        int size;
+
+        public static DefineClass start() {
+            var event = new DefineClass();
+            event.begin();
+            return event;
+        }
+
+        public void finish(String className, int size) {
+            end();
+            if (shouldCommit()) {
+                this.className = className;
+                this.size = size;
+                commit();
+            }
+        }
+    }
+
+    /** Searching an adapter function which was not cached */
+    @Name("tools.redstone.picasso.ResolveAdapter")
+    @Label("Resolve Adapter")
+    @Category({ CATEGORY, "Adapters" })
+    public static final class ResolveAdapter extends Event {
+        @Label("Source Class")
+        Class<?> srcClass;
+
+        @Label("Destination Class")
+        Class<?> dstClass;
+
+        @Label("Found")
+        boolean found;
+
+        public static ResolveAdapter start() {
+            var event = new ResolveAdapter();
+            event.begin();
+            return event;
+        }
+
+        public void finish(Class<?> srcClass, Class<?> dstClass, boolean found) {
+            end();
+            if (shouldCommit()) {
+                this.srcClass = srcClass;
+                this.dstClass = dstClass;
+                this.found = found;
+                commit();
+            }
+        }
+    }
+
+    /** A callback on an analysis hook */
+    @Name("tools.redstone.picasso.HookCallback")
+    @Label("Hook Callback")
+    @Category({ CATEGORY, "Analysis" })
+    @Threshold("1 ms")
+    public static final class HookCallback extends Event {
+        @Label("Hook Class")
+        String hookClass;
+
+        @Label("Callback")
+        String callback;
+
+        @Label("Subject")
+        String subject;
+
+        public static HookCallback start() {
+            var event = new HookCallback();
+            event.begin();
+            return event;
+        }
+
+        public void finish(Object hook, String callback, Object subject) {
+            end();
+            if (shouldCommit()) {
+                this.hookClass = hook.getClass().getName();
+                this.callback = callback;
+                this.subject = String.valueOf(subject);
+                commit();
+            }
+        }
+    }
+
+}
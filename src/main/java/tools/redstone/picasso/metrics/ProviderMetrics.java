@@ -0,0 +1,140 @@
+package tools.redstone.picasso.metrics;
+
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.adapter.AdapterAnalysisHook;
+import tools.redstone.picasso.adapter.DynamicAdapterRegistry;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters and timers of a provider. Recording only touches
+ * striped adders and atomic buckets, so the metrics are always on.
+ *
+ * @see AbstractionProvider#getMetrics()
+ * @see AbstractionProvider#registerMetricsMBean(String)
+ */
+public final class ProviderMetrics implements ProviderMetricsMXBean {
+
+    final AbstractionProvider provider; // The provider, used to find the adapter registries
+
+    public final LatencyHistogram readTime = new LatencyHistogram();    // The time to read the bytes of a class
+    public final LatencyHistogram analyzeTime = new LatencyHistogram(); // The time to analyze and transform a class
+    public final LatencyHistogram writeTime = new LatencyHistogram();   // The time to write a transformed class node
+    public final LatencyHistogram defineTime = new LatencyHistogram();  // The time to define a transformed class
+
+    public final LongAdder bytesIn = new LongAdder();                   // The amount of class bytes read
+    public final LongAdder bytesOut = new LongAdder();                  // The amount of transformed class bytes produced
+    public final LongAdder implementedCacheHits = new LongAdder();      // The implementation checks answered by the cache
+    public final LongAdder implementedCacheMisses = new LongAdder();    // The implementation checks which called the hooks
+    public final LongAdder analyzerCacheHits = new LongAdder();         // The analyzer lookups which found an existing analyzer
+    public final LongAdder analyzerCacheMisses = new LongAdder();       // The analyzer lookups which created an analyzer
+    public final LongAdder notImplementedThrows = new LongAdder();      // The NotImplementedException throws inserted into transformed code
+    public final HookCosts hookCosts = new HookCosts();                 // The invocations and time spent per analysis hook callback
+
+    public ProviderMetrics(AbstractionProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getReadTime() {
+        return readTime.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getAnalyzeTime() {
+        return analyzeTime.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getWriteTime() {
+        return writeTime.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getDefineTime() {
+        return defineTime.snapshot();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getImplementedCacheHits() {
+        return implementedCacheHits.sum();
+    }
+
+    @Override
+    public long getImplementedCacheMisses() {
+        return implementedCacheMisses.sum();
+    }
+
+    @Override
+    public long getAnalyzerCacheHits() {
+        return analyzerCacheHits.sum();
+    }
+
+    @Override
+    public long getAnalyzerCacheMisses() {
+        return analyzerCacheMisses.sum();
+    }
+
+    @Override
+    public long getAdapterCacheHits() {
+        long hits = 0;
+        for (var hook : provider.getAnalysisHooks())
+            if (hook instanceof AdapterAnalysisHook adapterHook && adapterHook.getAdapterRegistry() instanceof DynamicAdapterRegistry registry)
+                hits += registry.getCacheHits();
+        return hits;
+    }
+
+    @Override
+    public long getAdapterCacheMisses() {
+        long misses = 0;
+        for (var hook : provider.getAnalysisHooks())
+            if (hook instanceof AdapterAnalysisHook adapterHook && adapterHook.getAdapterRegistry() instanceof DynamicAdapterRegistry registry)
+                misses += registry.getCacheMisses();
+        return misses;
+    }
+
+    @Override
+    public long getNotImplementedThrowsInserted() {
+        return notImplementedThrows.sum();
+    }
+
+    @Override
+    public List<HookCosts.Snapshot> getHookCosts() {
+        return hookCosts.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        readTime.reset();
+        analyzeTime.reset();
+        writeTime.reset();
+        defineTime.reset();
+        bytesIn.reset();
+        bytesOut.reset();
+        implementedCacheHits.reset();
+        implementedCacheMisses.reset();
+        analyzerCacheHits.reset();
+        analyzerCacheMisses.reset();
+        notImplementedThrows.reset();
+        hookCosts.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ProviderMetrics(read: " + readTime.snapshot() + ", analyze: " + analyzeTime.snapshot() +
+                ", write: " + writeTime.snapshot() + ", define: " + defineTime.snapshot() +
+                ", bytes in: " + getBytesIn() + ", bytes out: " + getBytesOut() + ")";
+    }
+
+}
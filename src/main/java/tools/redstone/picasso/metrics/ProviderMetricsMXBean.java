@@ -0,0 +1,35 @@
+package tools.redstone.picasso.metrics;
+
+import java.util.List;
+
+/**
+ * The management interface of the metrics of a provider.
+ *
+ * @see ProviderMetrics
+ */
+public interface ProviderMetricsMXBean {
+
+    LatencyHistogram.Snapshot getReadTime();
+    LatencyHistogram.Snapshot getAnalyzeTime();
+    LatencyHistogram.Snapshot getWriteTime();
+    LatencyHistogram.Snapshot getDefineTime();
+
+    long getBytesIn();
+    long getBytesOut();
+
+    long getImplementedCacheHits();
+    long getImplementedCacheMisses();
+    long getAnalyzerCacheHits();
+    long getAnalyzerCacheMisses();
+    long getAdapterCacheHits();
+    long getAdapterCacheMisses();
+
+    long getNotImplementedThrowsInserted();
+
+    /** The invocations and time per hook callback, most expensive first */
+    List<HookCosts.Snapshot> getHookCosts();
+
+    /** Reset all counters and timers */
+    void reset();
+
+}
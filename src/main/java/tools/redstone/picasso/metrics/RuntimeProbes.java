@@ -0,0 +1,171 @@
+package tools.redstone.picasso.metrics;
+
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.analysis.ReferenceInfo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters inserted into transformed code at every {@code optionally}
+ * and {@code either} site and at every inserted {@link tools.redstone.picasso.usage.NotImplementedException}
+ * throw. The counters are delivered to the code as dynamic constants,
+ * so a probe is a constant load and a {@link LongAdder#increment()}.
+ *
+ * As the analysis decides which block a site uses when transforming,
+ * each site only counts into the counter for its decision, for example
+ * an {@code optionally} block which is not implemented counts fallbacks.
+ *
+ * @see AbstractionProvider#enableRuntimeProbes(boolean)
+ */
+public final class RuntimeProbes {
+
+    /** The kind of a probed site */
+    public enum Kind {
+        OPTIONALLY,
+        EITHER,
+        NOT_IMPLEMENTED
+    }
+
+    /** The counters of a site */
+    public enum Counter {
+        TAKEN,    // The preferred block ran
+        FALLBACK, // A fallback block or none ran
+        THROWN    // A NotImplementedException was thrown
+    }
+
+    /** A probed site in transformed code */
+    public static final class Site {
+        final int id;                                // The index of this site
+        final Kind kind;                             // The kind of site
+        final String method;                         // The method containing the site
+        final String detail;                         // The decision made at the site
+        final LongAdder[] counters = new LongAdder[] { new LongAdder(), new LongAdder(), new LongAdder() };
+
+        Site(int id, Kind kind, String method, String detail) {
+            this.id = id;
+            this.kind = kind;
+            this.method = method;
+            this.detail = detail;
+        }
+
+        public int id() {
+            return id;
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        public String method() {
+            return method;
+        }
+
+        public String detail() {
+            return detail;
+        }
+
+        public LongAdder counter(Counter counter) {
+            return counters[counter.ordinal()];
+        }
+    }
+
+    /** The counts of a site at some point */
+    public record SiteSnapshot(int id, Kind kind, String method, String detail, long taken, long fallback, long thrown) { }
+
+    static final Type TYPE_LongAdder = Type.getType(LongAdder.class);
+    static final String NAME_LongAdder = TYPE_LongAdder.getInternalName();
+
+    // The bootstrap method for the counter constants
+    static final Handle HANDLE_bootstrapCounter = new Handle(Opcodes.H_INVOKESTATIC, Type.getInternalName(RuntimeProbes.class), "bootstrapCounter",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;I)Ljava/util/concurrent/atomic/LongAdder;", false);
+
+    final List<Site> sites = new ArrayList<>(); // All registered sites by id
+
+    /* /!\ INTERNAL METHOD ONLY USED IN BYTECODE /!\ */
+    public static LongAdder bootstrapCounter(MethodHandles.Lookup lookup, String counter, Class<?> type, int siteId) {
+        AbstractionProvider provider = AbstractionProvider.forClassLoader(lookup.lookupClass().getClassLoader());
+        if (provider == null || provider.getRuntimeProbes() == null)
+            throw new IllegalStateException("Class " + lookup.lookupClass().getName() + " was not probed by an abstraction provider");
+        return provider.getRuntimeProbes().getSite(siteId).counter(Counter.valueOf(counter));
+    }
+
+    /**
+     * Register a new site.
+     *
+     * @param kind The kind of site.
+     * @param method The method containing the site.
+     * @param detail The decision made at the site.
+     * @return The site.
+     */
+    public synchronized Site register(Kind kind, ReferenceInfo method, String detail) {
+        Site site = new Site(sites.size(), kind, method.className() + "." + method.name() + method.descriptor(), detail);
+        sites.add(site);
+        return site;
+    }
+
+    public synchronized Site getSite(int id) {
+        return sites.get(id);
+    }
+
+    /**
+     * Emit the increment of the given counter of the given site, which
+     * requires the class version to be at least 55.
+     *
+     * @param mv The method visitor.
+     * @param site The site.
+     * @param counter The counter.
+     */
+    public static void visitIncrement(MethodVisitor mv, Site site, Counter counter) {
+        mv.visitLdcInsn(new ConstantDynamic(counter.name(), TYPE_LongAdder.getDescriptor(), HANDLE_bootstrapCounter, site.id));
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, NAME_LongAdder, "increment", "()V", false);
+    }
+
+    /** Get the current counts of all sites */
+    public synchronized List<SiteSnapshot> snapshot() {
+        List<SiteSnapshot> list = new ArrayList<>(sites.size());
+        for (Site site : sites) {
+            list.add(new SiteSnapshot(site.id, site.kind, site.method, site.detail,
+                    site.counter(Counter.TAKEN).sum(), site.counter(Counter.FALLBACK).sum(), site.counter(Counter.THROWN).sum()));
+        }
+
+        return list;
+    }
+
+    /**
+     * Write the current counts of all sites as CSV with a header line.
+     *
+     * @param writer The writer.
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("id,kind,method,detail,taken,fallback,thrown\n");
+        for (SiteSnapshot site : snapshot()) {
+            writer.write(site.id() + "," + site.kind() + "," + quote(site.method()) + "," + quote(site.detail()) + "," +
+                    site.taken() + "," + site.fallback() + "," + site.thrown() + "\n");
+        }
+    }
+
+    public void writeCsv(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writeCsv(writer);
+        }
+    }
+
+    private static String quote(String str) {
+        return "\"" + str.replace("\"", "\"\"") + "\"";
+    }
+
+}
@@ -2,11 +2,17 @@ package tools.redstone.picasso.util;
 
 import tools.redstone.picasso.util.functional.ThrowingSupplier;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
@@ -56,37 +62,101 @@ public class PackageWalker {
         }
     }
 
-    private final Path codeSourcePath; // The path of the code source as provided by the protection domain of the owner class
-    private final String pkg;          // The name of the package to walk and find resources in
+    private final List<Path> roots; // The classpath roots, directories or jars, to search
+    private final String pkg;       // The name of the package to walk and find resources in
 
     public PackageWalker(Class<?> owner, String pkg) {
-        this.codeSourcePath = Path.of(owner.getProtectionDomain().getCodeSource()
-                .getLocation().getPath().substring(1));
+        this(List.of(codeSourcePath(owner)), pkg);
+    }
+
+    public PackageWalker(List<Path> roots, String pkg) {
+        this.roots = List.copyOf(roots);
         this.pkg = pkg;
     }
 
+    /**
+     * Create a walker for the given package over all entries
+     * of the class path of the current process.
+     *
+     * @param pkg The package name.
+     * @return The walker.
+     */
+    public static PackageWalker ofClassPath(String pkg) {
+        List<Path> roots = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (!entry.isEmpty())
+                roots.add(Path.of(entry));
+        }
+
+        return new PackageWalker(roots, pkg);
+    }
+
+    // Get the path of the code source of the given class
+    private static Path codeSourcePath(Class<?> owner) {
+        try {
+            return Path.of(owner.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid code source location for " + owner, e);
+        }
+    }
+
+    /**
+     * Find all resources in the package and its subpackages. The
+     * entries are listed up front, so the returned stream splits
+     * well when made parallel, while the resources are only opened
+     * when requested. Archives are kept open until the stream is
+     * closed, so the stream should be closed after use.
+     *
+     * @return The stream of resources.
+     */
     public Stream<Resource> findResources() {
+        final String prefix = pkg.isEmpty() ? "" : pkg.replace('.', '/') + "/";
+        final List<Resource> resources = new ArrayList<>();
+        final List<ZipFile> openZips = new ArrayList<>();
+
         try {
-            Stream<Resource> stream;
-
-            // check type of code source
-            if (Files.isDirectory(codeSourcePath)) {
-                stream = Files.walk(codeSourcePath.resolve(pkg.replace('.', '/')))
-                        .filter(path -> !Files.isDirectory(path))
-                        .map(codeSourcePath::relativize) // relativize paths
-                        .map(path -> new Resource(path.toString().replace('\\', '/'), path.getFileName().toString(),
-                                () -> Files.newInputStream(path)));
-            } else {
-                // open jar/zip and find entries
-                try (var zip = new ZipFile(codeSourcePath.toString())) {
-                    stream = zip.stream().map(e -> Resource.fromOnlyPath(e.getName(), () -> zip.getInputStream(e)));
+            for (Path root : roots) {
+                // check type of code source
+                if (Files.isDirectory(root)) {
+                    Path dir = root.resolve(prefix);
+                    if (!Files.isDirectory(dir))
+                        continue;
+                    try (Stream<Path> paths = Files.walk(dir)) {
+                        paths.filter(Files::isRegularFile).forEach(path -> {
+                            String relative = root.relativize(path).toString().replace('\\', '/');
+                            resources.add(new Resource(relative, path.getFileName().toString(), () -> Files.newInputStream(path)));
+                        });
+                    }
+                } else if (Files.isRegularFile(root)) {
+                    // only entries under the package
+                    // prefix of the central directory
+                    ZipFile zip = new ZipFile(root.toFile());
+                    openZips.add(zip);
+                    Enumeration<? extends ZipEntry> entries = zip.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        if (!entry.isDirectory() && entry.getName().startsWith(prefix)) {
+                            resources.add(Resource.fromOnlyPath(entry.getName(), () -> zip.getInputStream(entry)));
+                        }
+                    }
                 }
             }
-
-            return stream;
         } catch (Exception e) {
+            closeAll(openZips);
             throw new RuntimeException("Failed to walk package " + pkg, e);
         }
+
+        return resources.stream().onClose(() -> closeAll(openZips));
+    }
+
+    private static void closeAll(List<ZipFile> zips) {
+        for (ZipFile zip : zips) {
+            try {
+                zip.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
     }
 
 }
@@ -4,16 +4,25 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import sun.misc.Unsafe;
+import tools.redstone.picasso.metrics.PicassoEvents;
+import tools.redstone.picasso.util.classpath.ClassBytesSource;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.security.ProtectionDomain;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
 import java.util.function.Predicate;
 
 /**
@@ -22,7 +31,9 @@ import java.util.function.Predicate;
 public class ReflectUtil {
     private ReflectUtil() { }
 
-    static final Map<String, Class<?>> forNameCache = new HashMap<>();
+    // The classes found by name per initiating loader, the loaders are weakly
+    // referenced and the classes too, as a class references its loader
+    static final Map<ClassLoader, Map<String, WeakReference<Class<?>>>> forNameCache = Collections.synchronizedMap(new WeakHashMap<>());
 
     // The sun.misc.Unsafe instance
     static final Unsafe UNSAFE;
@@ -73,6 +84,16 @@ public class ReflectUtil {
         return UNSAFE;
     }
 
+    // Get the class name cache for the given initiating loader
+    private static Map<String, WeakReference<Class<?>>> forNameCache(ClassLoader loader) {
+        return forNameCache.computeIfAbsent(loader, __ -> new ConcurrentHashMap<>());
+    }
+
+    private static Class<?> getCached(Map<String, WeakReference<Class<?>>> cache, String name) {
+        WeakReference<Class<?>> ref = cache.get(name);
+        return ref != null ? ref.get() : null;
+    }
+
     /**
      * Get the loaded class by the given name.
      *
@@ -81,12 +102,13 @@ public class ReflectUtil {
      * @return The class.
      */
     public static Class<?> getClass(String name) {
-        Class<?> klass = forNameCache.get(name);
+        Map<String, WeakReference<Class<?>>> cache = forNameCache(ReflectUtil.class.getClassLoader());
+        Class<?> klass = getCached(cache, name);
         if (klass != null)
             return klass;
 
         try {
-            forNameCache.put(name, klass = Class.forName(name));
+            cache.put(name, new WeakReference<>(klass = Class.forName(name)));
             return klass;
         } catch (Exception e) {
             throw new IllegalArgumentException("No class by name '" + name + "'", e);
@@ -102,12 +124,13 @@ public class ReflectUtil {
      * @return The class.
      */
     public static Class<?> getClass(String name, ClassLoader loader) {
-        Class<?> klass = forNameCache.get(name);
+        Map<String, WeakReference<Class<?>>> cache = forNameCache(loader);
+        Class<?> klass = getCached(cache, name);
         if (klass != null)
             return klass;
 
         try {
-            forNameCache.put(name, klass = Class.forName(name, true, loader));
+            cache.put(name, new WeakReference<>(klass = Class.forName(name, true, loader)));
             return klass;
         } catch (Exception e) {
             throw new IllegalArgumentException("Error while finding class by name '" + name + "'", e);
@@ -253,14 +276,112 @@ public class ReflectUtil {
                                                       int writerFlags,
                                                       boolean warnLoaded,
                                                       Consumer<Class<?>> postLoad) {
-        // create class loader
-        return new ClassLoader(parent) {
-            @Override
-            public Class<?> loadClass(String name) throws ClassNotFoundException {
-                if (!namePredicate.test(name)) {
-                    return super.loadClass(name);
-                }
+        return new TransformingClassLoader(parent, null, namePredicate, null, transformer, writerFlags, warnLoaded, postLoad);
+    }
+
+    /** A class loader which is owned by another object, like a provider */
+    public interface OwnedClassLoader {
+        Object owner(); // The object owning this class loader, may be null
+    }
+
+    /**
+     * Class loader which transforms the classes matching the name
+     * predicate before defining them itself.
+     */
+    public static class TransformingClassLoader extends ClassLoader implements OwnedClassLoader {
+        private final Object owner;                                  // The object owning this class loader, may be null
+        private final Predicate<String> namePredicate;               // The predicate for names of classes to transform
+        private final Function<String, ClassReader> readerSource;    // Provides the class readers for class names, may be null
+        private final ClassTransformer transformer;                  // The class transformer
+        private final int writerFlags;                               // The class writer flags
+        private final boolean warnLoaded;                            // Whether to warn when a class was already loaded by another loader
+        private final Consumer<Class<?>> postLoad;                   // Called after a class was defined, may be null
+        private volatile ClassBytesSource bytesSource;               // The source for class bytes not found by the parent, may be null
+        private volatile BiConsumer<String, byte[]> postTransform;   // Called with the transformed bytes of each class, may be null
+        private volatile Function<String, byte[]> transformedSource; // Provides already transformed bytes for class names, may be null
+        private volatile ClassBytesSource archive;                   // Provides the bytes of archived, already transformed classes, may be null
+        private volatile ProtectionDomain archiveDomain;             // The protection domain to define archived classes with
+        private volatile ObjLongConsumer<Class<?>> defineTimer;      // Called with each defined class and the nanoseconds defining it took, may be null
+
+        public TransformingClassLoader(ClassLoader parent,
+                                       Object owner,
+                                       Predicate<String> namePredicate,
+                                       Function<String, ClassReader> readerSource,
+                                       ClassTransformer transformer,
+                                       int writerFlags,
+                                       boolean warnLoaded,
+                                       Consumer<Class<?>> postLoad) {
+            super(parent);
+            this.owner = owner;
+            this.namePredicate = namePredicate;
+            this.readerSource = readerSource;
+            this.transformer = transformer;
+            this.writerFlags = writerFlags;
+            this.warnLoaded = warnLoaded;
+            this.postLoad = postLoad;
+        }
+
+        @Override
+        public Object owner() {
+            return owner;
+        }
+
+        public void setPostTransform(BiConsumer<String, byte[]> postTransform) {
+            this.postTransform = postTransform;
+        }
+
+        public void setDefineTimer(ObjLongConsumer<Class<?>> defineTimer) {
+            this.defineTimer = defineTimer;
+        }
+
+        /**
+         * Set the source of already transformed class bytes, which is
+         * checked before reading and transforming a class. It should
+         * return null for classes which were not transformed yet.
+         *
+         * @param transformedSource The source or null.
+         */
+        public void setTransformedSource(Function<String, byte[]> transformedSource) {
+            this.transformedSource = transformedSource;
+        }
+
+        /**
+         * Set the source of archived class bytes, which were already
+         * transformed. Archived classes matching the name predicate are
+         * defined from it as is, with the given protection domain.
+         *
+         * @param archive The source or null to stop using an archive.
+         * @param archiveDomain The protection domain of the archived classes.
+         */
+        public void setArchive(ClassBytesSource archive, ProtectionDomain archiveDomain) {
+            this.archiveDomain = archiveDomain;
+            this.archive = archive;
+        }
 
+        public ClassBytesSource getBytesSource() {
+            return bytesSource;
+        }
+
+        /**
+         * Set the source to read class bytes from, classes which are
+         * not transformed are only defined from it if the parent
+         * loader can not find them.
+         *
+         * @param bytesSource The source or null to use the resources.
+         */
+        public void setBytesSource(ClassBytesSource bytesSource) {
+            this.bytesSource = bytesSource;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!namePredicate.test(name)) {
+                return super.loadClass(name, resolve);
+            }
+
+            // transformation and definition are serialized on the loading lock,
+            // which is the loader itself as it is not parallel capable
+            synchronized (getClassLoadingLock(name)) {
                 Class<?> klass = ReflectUtil.findLoadedClassInParents(this, name);
                 if (klass != null) {
                     if (warnLoaded && klass.getClassLoader() != this) {
@@ -271,41 +392,91 @@ public class ReflectUtil {
                 }
 
                 try {
-                    String classAsPath = name.replace('.', '/') + ".class";
+                    // define archived classes from the archive
+                    ClassBytesSource archive = this.archive;
+                    ByteBuffer archived = archive != null ? archive.getClassBytes(name) : null;
+                    if (archived != null) {
+                        return define(name, archived, archiveDomain);
+                    }
 
-                    // open resource
-                    try (InputStream stream = getResourceAsStream(classAsPath)) {
-                        if (stream == null)
-                            throw new IllegalArgumentException("Could not find resource stream for " + klass);
-                        byte[] bytes = stream.readAllBytes();
+                    Function<String, byte[]> transformedSource = this.transformedSource;
+                    byte[] bytes = transformedSource != null ? transformedSource.apply(name) : null;
+                    if (bytes == null) {
+                        ClassReader reader = readerSource != null ? readerSource.apply(name) : readClass(name);
+                        if (reader == null)
+                            throw new IllegalArgumentException("Could not find class bytes for " + name);
 
-                        ClassReader reader = new ClassReader(bytes);
                         ClassWriter writer = new ClassWriter(writerFlags);
                         transformer.transform(name, reader, writer);
                         bytes = writer.toByteArray();
+                    }
 
-                        // define the class
-                        klass = defineClass(name, bytes, 0, bytes.length);
-                        if (postLoad != null)
-                            postLoad.accept(klass);
+                    BiConsumer<String, byte[]> postTransform = this.postTransform;
+                    if (postTransform != null)
+                        postTransform.accept(name, bytes);
 
-                        return klass;
-                    }
+                    // define the class
+                    return define(name, ByteBuffer.wrap(bytes), null);
                 } catch (Throwable t) {
                     throw new RuntimeException("While loading class " + name, t);
                 }
             }
+        }
 
-            @Override
-            protected Class<?> findClass(String name) throws ClassNotFoundException {
-                Class<?> klass = this.findLoadedClass(name);
-                if (klass != null) {
-                    return klass;
-                }
+        // Define the class from the given bytes and
+        // call the define timer and post load callback
+        private Class<?> define(String name, ByteBuffer bytes, ProtectionDomain domain) {
+            var event = PicassoEvents.DefineClass.start();
+            int length = bytes.remaining();
+            long t = System.nanoTime();
+            Class<?> klass = defineClass(name, bytes, domain);
+            event.finish(name, length);
+            ObjLongConsumer<Class<?>> defineTimer = this.defineTimer;
+            if (defineTimer != null)
+                defineTimer.accept(klass, System.nanoTime() - t);
+            if (postLoad != null)
+                postLoad.accept(klass);
+
+            return klass;
+        }
 
-                return super.findClass(name);
+        // Read the class by the given name from the bytes source
+        // if set, otherwise from the resources of this loader
+        private ClassReader readClass(String name) throws IOException {
+            ClassBytesSource bytesSource = this.bytesSource;
+            if (bytesSource != null) {
+                byte[] bytes = bytesSource.getClassByteArray(name);
+                return bytes != null ? new ClassReader(bytes) : null;
             }
-        };
+
+            try (InputStream stream = getResourceAsStream(name.replace('.', '/') + ".class")) {
+                if (stream == null)
+                    return null;
+                return new ClassReader(stream.readAllBytes());
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            Class<?> klass = this.findLoadedClass(name);
+            if (klass != null) {
+                return klass;
+            }
+
+            // define untransformed classes straight from the source buffer
+            ClassBytesSource bytesSource = this.bytesSource;
+            if (bytesSource != null) {
+                try {
+                    ByteBuffer buffer = bytesSource.getClassBytes(name);
+                    if (buffer != null)
+                        return defineClass(name, buffer, (ProtectionDomain) null);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException("While reading class bytes for " + name, e);
+                }
+            }
+
+            return super.findClass(name);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -350,4 +521,38 @@ public class ReflectUtil {
         return -1;
     }
 
+    /**
+     * Linearizes the supertype hierarchy of the given class, including the
+     * class itself, ordered by increasing separation from the class.
+     *
+     * Types with the same separation are ordered superclass first, then
+     * interfaces in declaration order, so the result is deterministic.
+     * Every type is only included once, at its smallest separation, and
+     * {@link Object} is always last.
+     *
+     * @param klass The class.
+     * @return The list of supertypes.
+     */
+    public static List<Class<?>> linearizedSupertypes(Class<?> klass) {
+        List<Class<?>> list = new ArrayList<>();
+        Set<Class<?>> visited = new HashSet<>();
+        list.add(klass);
+        visited.add(klass);
+
+        // breadth first walk, the list doubles as the queue
+        for (int i = 0; i < list.size(); i++) {
+            Class<?> current = list.get(i);
+            Class<?> superclass = current.getSuperclass();
+            if (superclass != null && superclass != Object.class && visited.add(superclass))
+                list.add(superclass);
+            for (Class<?> itf : current.getInterfaces())
+                if (visited.add(itf))
+                    list.add(itf);
+        }
+
+        if (klass != Object.class && !klass.isPrimitive())
+            list.add(Object.class);
+        return list;
+    }
+
 }
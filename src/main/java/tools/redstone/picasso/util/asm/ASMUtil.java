@@ -1,8 +1,6 @@
 package tools.redstone.picasso.util.asm;
 
-import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
+import org.objectweb.asm.*;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
@@ -10,6 +8,8 @@ import tools.redstone.picasso.analysis.ReferenceInfo;
 import tools.redstone.picasso.util.ReflectUtil;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ASMUtil {
 
@@ -63,7 +63,7 @@ public class ASMUtil {
     /** asm.Type -> java.lang.Class */
     public static Class<?> asClass(Type type) {
         return switch (type.getSort()) {
-            case Type.ARRAY -> Array.newInstance(asClass(type), 0).getClass();
+            case Type.ARRAY -> Array.newInstance(asClass(type.getElementType()), new int[type.getDimensions()]).getClass();
             case Type.BOOLEAN -> boolean.class;
             case Type.BYTE -> byte.class;
             case Type.CHAR -> char.class;
@@ -79,6 +79,161 @@ public class ASMUtil {
         };
     }
 
+    /**
+     * Get the erased type of the given field type signature, type variables
+     * are erased to {@link Object}. Plain descriptors are returned as is.
+     *
+     * @param signature The signature or descriptor.
+     * @return The erased type.
+     */
+    public static Type erasure(String signature) {
+        StringBuilder b = new StringBuilder();
+        eraseSignature(signature, 0, b);
+        return Type.getType(b.toString());
+    }
+
+    /**
+     * Get the signatures of the type arguments of the outermost class type
+     * in the given field type signature. Wildcard bounds are unwrapped and
+     * unbounded or lower bounded wildcards become {@link Object}.
+     *
+     * @param signature The signature.
+     * @return The type argument signatures, empty if not parameterized.
+     */
+    public static List<String> typeArguments(String signature) {
+        List<String> list = new ArrayList<>();
+        if (signature == null || signature.charAt(0) != 'L')
+            return list;
+
+        int i = signature.indexOf('<');
+        if (i == -1 || i > signature.indexOf(';'))
+            return list;
+        i++;
+        while (signature.charAt(i) != '>') {
+            char c = signature.charAt(i);
+            if (c == '*') {
+                list.add("Ljava/lang/Object;");
+                i++;
+                continue;
+            }
+
+            int start = c == '+' || c == '-' ? i + 1 : i;
+            int end = eraseSignature(signature, start, new StringBuilder());
+            list.add(c == '-' ? "Ljava/lang/Object;" : signature.substring(start, end));
+            i = end;
+        }
+
+        return list;
+    }
+
+    /** Get the return type signature from the given method signature */
+    public static String returnTypeSignature(String methodSignature) {
+        int start = methodSignature.indexOf(')') + 1;
+        int end = methodSignature.indexOf('^', start);
+        return methodSignature.substring(start, end == -1 ? methodSignature.length() : end);
+    }
+
+    // Appends the erasure of the type signature starting at the
+    // given index to the builder, returns the index after the signature
+    private static int eraseSignature(String signature, int i, StringBuilder b) {
+        switch (signature.charAt(i)) {
+            case '[' -> {
+                b.append('[');
+                return eraseSignature(signature, i + 1, b);
+            }
+
+            case 'T' -> {
+                b.append("Ljava/lang/Object;");
+                return signature.indexOf(';', i) + 1;
+            }
+
+            case 'L' -> {
+                b.append('L');
+                int depth = 0;
+                for (i++; ; i++) {
+                    char c = signature.charAt(i);
+                    if (c == '<') depth++;
+                    else if (c == '>') depth--;
+                    else if (depth == 0 && c == '.') b.append('$'); // inner class of parameterized type
+                    else if (depth == 0 && c == ';') break;
+                    else if (depth == 0) b.append(c);
+                }
+
+                b.append(';');
+                return i + 1;
+            }
+
+            default -> {
+                b.append(signature.charAt(i));
+                return i + 1;
+            }
+        }
+    }
+
+    /** primitive asm.Type -> boxed asm.Type, or null if not primitive */
+    public static Type boxedType(Type type) {
+        return switch (type.getSort()) {
+            case Type.BOOLEAN -> Type.getType(Boolean.class);
+            case Type.BYTE -> Type.getType(Byte.class);
+            case Type.CHAR -> Type.getType(Character.class);
+            case Type.DOUBLE -> Type.getType(Double.class);
+            case Type.FLOAT -> Type.getType(Float.class);
+            case Type.INT -> Type.getType(Integer.class);
+            case Type.LONG -> Type.getType(Long.class);
+            case Type.SHORT -> Type.getType(Short.class);
+            default -> null;
+        };
+    }
+
+    /** boxed asm.Type -> primitive asm.Type, or null if not a box */
+    public static Type unboxedType(Type type) {
+        if (type.getSort() != Type.OBJECT)
+            return null;
+        return switch (type.getInternalName()) {
+            case "java/lang/Boolean" -> Type.BOOLEAN_TYPE;
+            case "java/lang/Byte" -> Type.BYTE_TYPE;
+            case "java/lang/Character" -> Type.CHAR_TYPE;
+            case "java/lang/Double" -> Type.DOUBLE_TYPE;
+            case "java/lang/Float" -> Type.FLOAT_TYPE;
+            case "java/lang/Integer" -> Type.INT_TYPE;
+            case "java/lang/Long" -> Type.LONG_TYPE;
+            case "java/lang/Short" -> Type.SHORT_TYPE;
+            default -> null;
+        };
+    }
+
+    /** Check whether the given method is the boxing method {@code Box.valueOf(primitive)} */
+    public static boolean isBoxingMethod(ReferenceInfo info) {
+        Type unboxed = unboxedType(Type.getObjectType(info.internalClassName()));
+        return unboxed != null && "valueOf".equals(info.name()) &&
+                info.descriptor().equals("(" + unboxed.getDescriptor() + ")L" + info.internalClassName() + ";");
+    }
+
+    /** Check whether the given method is the unboxing method {@code Box.primitiveValue()} */
+    public static boolean isUnboxingMethod(ReferenceInfo info) {
+        Type unboxed = unboxedType(Type.getObjectType(info.internalClassName()));
+        return unboxed != null && (unboxed.getClassName() + "Value").equals(info.name()) &&
+                info.descriptor().equals("()" + unboxed.getDescriptor());
+    }
+
+    /** Writes the {@code Box.valueOf(primitive)} call for the given primitive type */
+    public static void visitBox(MethodVisitor v, Type primitive) {
+        Type boxed = boxedType(primitive);
+        v.visitMethodInsn(Opcodes.INVOKESTATIC, boxed.getInternalName(), "valueOf",
+                "(" + primitive.getDescriptor() + ")" + boxed.getDescriptor(), false);
+    }
+
+    // The bootstrap method resolving primitive class constants
+    static final Handle HANDLE_primitiveClass = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/ConstantBootstraps", "primitiveClass",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Class;", false);
+
+    /** Get the constant pool value resolving to the {@link Class} object for the given type */
+    public static Object classConstant(Type type) {
+        if (boxedType(type) == null)
+            return type;
+        return new ConstantDynamic(type.getDescriptor(), "Ljava/lang/Class;", HANDLE_primitiveClass);
+    }
+
     public static void makeDebugLog(MethodVisitor v, String msg) {
         v.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
         v.visitLdcInsn(msg);
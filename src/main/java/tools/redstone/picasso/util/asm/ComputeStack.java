@@ -97,7 +97,8 @@ public class ComputeStack extends Stack<Object> {
     /** Represents the return value of a method */
     public record ReturnValue(ReferenceInfo method, Type type, String signature) implements Value {
         public static ReturnValue of(ReferenceInfo info) {
-            return new ReturnValue(info, info.type().getReturnType(), info.signature());
+            Type returnType = info.type().getReturnType();
+            return new ReturnValue(info, returnType, info.signature() != null ? ASMUtil.returnTypeSignature(info.signature()) : returnType.getDescriptor());
         }
     }
 
@@ -124,17 +125,15 @@ public class ComputeStack extends Stack<Object> {
             super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
             final var ref = ReferenceInfo.forMethodInfo(bootstrapMethodHandle.getOwner(), bootstrapMethodHandle.getName(), descriptor, bootstrapMethodHandle.getTag() == H_INVOKESTATIC);
 
-            if (!ref.isStatic())
-                // pop instance val
-                stack.pop();
-
+            // the call site descriptor covers all operands,
+            // regardless of the kind of bootstrap method
             for (int i = 0, n = ref.type().getArgumentTypes().length; i < n; i++) {
                 stack.pop();
             }
 
             var retType = ref.type().getReturnType();
             if (retType.getSort() != Type.VOID)
-                stack.push(new ReturnValue(ref, retType.getReturnType(), retType.getDescriptor()));
+                stack.push(new ReturnValue(ref, retType, retType.getDescriptor()));
         }
 
         @Override
@@ -22,6 +22,15 @@ public class MethodWriter extends MethodVisitor {
         this.newMethodNode.instructions.add(node);
     }
 
+    // Get the last instruction written to the method, or null if empty
+    public AbstractInsnNode lastInsn() {
+        return this.newMethodNode.instructions.getLast();
+    }
+
+    public void removeInsn(AbstractInsnNode node) {
+        this.newMethodNode.instructions.remove(node);
+    }
+
     public void addInsn(Consumer<MethodVisitor> writer) {
         addInsn(new InsnNode(-1) {
             @Override
@@ -0,0 +1,113 @@
+package tools.redstone.picasso.util.classpath;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Provides the bytes of class files by class name.
+ */
+@FunctionalInterface
+public interface ClassBytesSource {
+
+    /**
+     * Get the bytes of the class file for the given class, the
+     * returned buffer may be a read-only view of a larger mapped
+     * region and should not be modified.
+     *
+     * @param className The class name, dots or slashes as separators.
+     * @return The class bytes or null if the class is not in this source.
+     */
+    ByteBuffer getClassBytes(String className) throws IOException;
+
+    /**
+     * Get the bytes of the class file for the given class as
+     * an exactly sized array, copying only if necessary.
+     *
+     * @param className The class name.
+     * @return The class bytes or null if the class is not in this source.
+     */
+    default byte[] getClassByteArray(String className) throws IOException {
+        return toArray(getClassBytes(className));
+    }
+
+    /**
+     * Get the bytes remaining in the given buffer as an array, this
+     * avoids a copy if the buffer wraps an exactly sized array.
+     *
+     * @param buffer The buffer.
+     * @return The bytes or null if the buffer is null.
+     */
+    static byte[] toArray(ByteBuffer buffer) {
+        if (buffer == null)
+            return null;
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 &&
+                buffer.remaining() == buffer.array().length)
+            return buffer.array();
+
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    // Get the relative path of the class file for the given class name
+    static String classFilePath(String className) {
+        return className.replace('.', '/') + ".class";
+    }
+
+    /**
+     * Create a source which reads class files from the resources
+     * of the given class loader.
+     *
+     * @param loader The class loader.
+     * @return The source.
+     */
+    static ClassBytesSource ofClassLoader(ClassLoader loader) {
+        return className -> {
+            try (InputStream stream = loader.getResourceAsStream(classFilePath(className))) {
+                if (stream == null)
+                    return null;
+                return ByteBuffer.wrap(stream.readAllBytes());
+            }
+        };
+    }
+
+    /**
+     * Create a source which reads class files from the jar or
+     * directory at the given path, jars are memory mapped.
+     *
+     * @param path The path of the jar or directory.
+     * @return The source.
+     */
+    static ClassBytesSource of(Path path) {
+        try {
+            return Files.isDirectory(path) ? new DirectoryClassBytesSource(path) : MappedJarClassBytesSource.open(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open class bytes source for " + path, e);
+        }
+    }
+
+    /**
+     * Create a source which searches the given sources in order.
+     *
+     * @param sources The sources.
+     * @return The source.
+     */
+    static ClassBytesSource composite(List<ClassBytesSource> sources) {
+        final ClassBytesSource[] array = sources.toArray(new ClassBytesSource[0]);
+        return className -> {
+            for (ClassBytesSource source : array) {
+                ByteBuffer buffer = source.getClassBytes(className);
+                if (buffer != null)
+                    return buffer;
+            }
+
+            return null;
+        };
+    }
+
+}
@@ -0,0 +1,48 @@
+package tools.redstone.picasso.util.classpath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads class files from a directory tree laid out by package.
+ */
+public final class DirectoryClassBytesSource implements ClassBytesSource {
+
+    final Path root; // The root directory
+
+    public DirectoryClassBytesSource(Path root) {
+        this.root = root;
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    @Override
+    public ByteBuffer getClassBytes(String className) throws IOException {
+        Path file = root.resolve(ClassBytesSource.classFilePath(className));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Class file too large: " + file);
+
+            // read into an exactly sized array so
+            // the bytes can be used without copying
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) { }
+            return buffer.flip();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryClassBytesSource(" + root + ")";
+    }
+
+}
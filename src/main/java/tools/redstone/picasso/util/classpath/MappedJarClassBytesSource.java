@@ -0,0 +1,175 @@
+package tools.redstone.picasso.util.classpath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads class files from a memory mapped jar file. The central
+ * directory is indexed once when opening, stored entries are then
+ * returned as zero-copy slices of the mapping and deflated entries
+ * are inflated straight from it.
+ *
+ * Zip64 archives are not supported.
+ */
+public final class MappedJarClassBytesSource implements ClassBytesSource {
+
+    static final int SIG_END_OF_CENTRAL_DIR = 0x06054b50;
+    static final int SIG_CENTRAL_DIR_ENTRY = 0x02014b50;
+    static final int SIG_LOCAL_HEADER = 0x04034b50;
+
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
+
+    /** An indexed class entry in the jar */
+    record Entry(int method, int compressedSize, int size, int localHeaderOffset) { }
+
+    final Path path;                  // The path of the jar file
+    final MappedByteBuffer mapping;   // The read-only mapping of the whole file
+    final Map<String, Entry> entries; // The class file entries by path
+
+    MappedJarClassBytesSource(Path path, MappedByteBuffer mapping, Map<String, Entry> entries) {
+        this.path = path;
+        this.mapping = mapping;
+        this.entries = entries;
+    }
+
+    /**
+     * Map the jar file at the given path and index its central directory.
+     *
+     * @param path The path.
+     * @return The source.
+     */
+    public static MappedJarClassBytesSource open(Path path) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Jar file too large to map: " + path);
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        return new MappedJarClassBytesSource(path, mapping, indexCentralDirectory(path, mapping));
+    }
+
+    // Find the end of central directory record and
+    // index all class entries in the central directory
+    private static Map<String, Entry> indexCentralDirectory(Path path, ByteBuffer buf) throws IOException {
+        // the record is at least 22 bytes and may be followed by a comment
+        int eocd = -1;
+        for (int i = buf.limit() - 22, min = Math.max(0, buf.limit() - 22 - 0xFFFF); i >= min; i--) {
+            if (buf.getInt(i) == SIG_END_OF_CENTRAL_DIR) {
+                eocd = i;
+                break;
+            }
+        }
+
+        if (eocd == -1)
+            throw new IOException("Not a zip file: " + path);
+
+        int count = Short.toUnsignedInt(buf.getShort(eocd + 10));
+        long cdOffset = Integer.toUnsignedLong(buf.getInt(eocd + 16));
+        if (count == 0xFFFF || cdOffset == 0xFFFFFFFFL)
+            throw new IOException("Zip64 is not supported: " + path);
+
+        Map<String, Entry> entries = new HashMap<>(count * 2);
+        int pos = (int) cdOffset;
+        for (int i = 0; i < count; i++) {
+            if (buf.getInt(pos) != SIG_CENTRAL_DIR_ENTRY)
+                throw new IOException("Corrupt central directory in " + path + " at " + pos);
+
+            int method = Short.toUnsignedInt(buf.getShort(pos + 10));
+            int compressedSize = buf.getInt(pos + 20);
+            int size = buf.getInt(pos + 24);
+            int nameLength = Short.toUnsignedInt(buf.getShort(pos + 28));
+            int extraLength = Short.toUnsignedInt(buf.getShort(pos + 30));
+            int commentLength = Short.toUnsignedInt(buf.getShort(pos + 32));
+            int localHeaderOffset = buf.getInt(pos + 42);
+
+            String name = readName(buf, pos + 46, nameLength);
+            if (name.endsWith(".class")) {
+                if (compressedSize < 0 || size < 0 || localHeaderOffset < 0)
+                    throw new IOException("Zip64 is not supported: " + path);
+                entries.put(name, new Entry(method, compressedSize, size, localHeaderOffset));
+            }
+
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+
+        return entries;
+    }
+
+    private static String readName(ByteBuffer buf, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /** Get the paths of all class files in the jar */
+    public Iterable<String> classFilePaths() {
+        return entries.keySet();
+    }
+
+    @Override
+    public ByteBuffer getClassBytes(String className) throws IOException {
+        Entry entry = entries.get(ClassBytesSource.classFilePath(className));
+        if (entry == null)
+            return null;
+
+        // the local header has its own name and extra lengths
+        int header = entry.localHeaderOffset();
+        if (mapping.getInt(header) != SIG_LOCAL_HEADER)
+            throw new IOException("Corrupt local header for " + className + " in " + path);
+        int dataOffset = header + 30 + Short.toUnsignedInt(mapping.getShort(header + 26)) + Short.toUnsignedInt(mapping.getShort(header + 28));
+        ByteBuffer data = mapping.slice(dataOffset, entry.compressedSize()).asReadOnlyBuffer();
+
+        return switch (entry.method()) {
+            case METHOD_STORED -> data;
+            case METHOD_DEFLATED -> inflate(className, data, entry.size());
+            default -> throw new IOException("Unsupported compression method " + entry.method() + " for " + className + " in " + path);
+        };
+    }
+
+    // Inflate the given raw deflate data into an exactly sized buffer
+    private ByteBuffer inflate(String className, ByteBuffer data, int size) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            byte[] bytes = new byte[size];
+            int n = 0;
+            while (n < size) {
+                int read = inflater.inflate(bytes, n, size - n);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                n += read;
+            }
+
+            if (n != size)
+                throw new IOException("Truncated entry for " + className + " in " + path);
+            return ByteBuffer.wrap(bytes);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt entry for " + className + " in " + path, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MappedJarClassBytesSource(" + path + ")";
+    }
+
+}
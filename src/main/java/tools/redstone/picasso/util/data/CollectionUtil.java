@@ -1,8 +1,6 @@
 package tools.redstone.picasso.util.data;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -42,6 +40,71 @@ public class CollectionUtil {
         }
     }
 
+    /**
+     * Create a lazy view of the given list which maps the elements
+     * using the given mapping function every time they are accessed.
+     *
+     * @param list The source list.
+     * @param mapper The mapping function.
+     * @param <T> The source type.
+     * @param <T2> The destination type.
+     * @return The mapped view.
+     */
+    public static <T, T2> List<T2> mapLazy(List<T> list, Function<? super T, ? extends T2> mapper) {
+        if (list instanceof RandomAccess) {
+            return new MappedRandomAccessList<>(list, mapper);
+        }
+
+        return new AbstractList<>() {
+            @Override
+            public T2 get(int index) {
+                return mapper.apply(list.get(index));
+            }
+
+            @Override
+            public Iterator<T2> iterator() {
+                Iterator<T> iterator = list.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public T2 next() {
+                        return mapper.apply(iterator.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return list.size();
+            }
+        };
+    }
+
+    // Lazily mapped view of a random access list
+    private static final class MappedRandomAccessList<T, T2> extends AbstractList<T2> implements RandomAccess {
+        final List<T> list;
+        final Function<? super T, ? extends T2> mapper;
+
+        MappedRandomAccessList(List<T> list, Function<? super T, ? extends T2> mapper) {
+            this.list = list;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public T2 get(int index) {
+            return mapper.apply(list.get(index));
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+    }
+
     public static <T> void addIfNotNull(Collection<T> collection, T val) {
         if (val != null) collection.add(val);
     }
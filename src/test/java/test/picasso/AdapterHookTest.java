@@ -3,18 +3,24 @@ package test.picasso;
 import org.junit.jupiter.api.Assertions;
 import tools.redstone.picasso.AbstractionProvider;
 import tools.redstone.picasso.HandleAbstraction;
+import tools.redstone.picasso.adapter.Adapter;
 import tools.redstone.picasso.adapter.AdapterRegistry;
+import tools.redstone.picasso.adapter.PrimitiveAdapter;
 import tools.redstone.picasso.usage.Abstraction;
 
+import java.util.List;
+
 public class AdapterHookTest {
 
     public static void main(String[] args) {
         TestSystem.runTests(AdapterHookTest.class, true);
     }
 
-    public interface A extends Abstraction { B getB(); }
+    public interface A extends Abstraction { B getB(); long getId(); double getScale(); List<B> getBs(); B[] getBArray(); }
     public interface B extends Abstraction { String hello(); }
-    public static class InternalA { public InternalB getB() { return new InternalB(); } }
+    public static class InternalA { public InternalB getB() { return new InternalB(); } public int getId() { return 21; } public float getScale() { return 1.5f; }
+        public List<InternalB> getBs() { return List.of(new InternalB(), new InternalB()); }
+        public InternalB[] getBArray() { return new InternalB[] { new InternalB() }; } }
     public static class InternalB { public final String hello = "HELLO"; }
 
     public static class AImpl extends HandleAbstraction<InternalA> implements A {
@@ -26,6 +32,27 @@ public class AdapterHookTest {
         public B getB() {
             return adapt(handle().getB());
         }
+
+        @Override
+        public long getId() {
+            return adapt(handle().getId());
+        }
+
+        @Override
+        public double getScale() {
+            return adapt(handle().getScale());
+        }
+
+        @Override
+        public List<B> getBs() {
+            List<InternalB> list = handle().getBs();
+            return adapt(list);
+        }
+
+        @Override
+        public B[] getBArray() {
+            return adapt(handle().getBArray());
+        }
     }
 
     public static class BImpl extends HandleAbstraction<InternalB> implements B {
@@ -46,6 +73,11 @@ public class AdapterHookTest {
             B b = a.getB();
 
             Assertions.assertEquals(b.hello(), "HELLO");
+            Assertions.assertEquals(42L, a.getId());
+            Assertions.assertEquals(3.0, a.getScale());
+            Assertions.assertEquals(2, a.getBs().size());
+            Assertions.assertEquals("HELLO", a.getBs().get(1).hello());
+            Assertions.assertEquals("HELLO", a.getBArray()[0].hello());
         }
     }
 
@@ -53,6 +85,15 @@ public class AdapterHookTest {
         // setup adapters
         itf.adapterRegistry().registerHandleAdapter(InternalA.class, A.class);
         itf.adapterRegistry().registerHandleAdapter(InternalB.class, B.class);
+        itf.adapterRegistry().registerPrimitive(PrimitiveAdapter.of(int.class, long.class, (PrimitiveAdapter.IntToLong) id -> id * 2L));
+
+        // only a boxed adapter, the primitive call falls back to it
+        itf.adapterRegistry().register(new Adapter<Float, Double>() {
+            public Class<Float> aClass() { return Float.class; }
+            public Class<Double> bClass() { return Double.class; }
+            public Float toA(Double val) { return (float) (val / 2); }
+            public Double toB(Float val) { return val * 2.0; }
+        });
     }
 
     @TestSystem.Test(autoRegisterImpls = true)
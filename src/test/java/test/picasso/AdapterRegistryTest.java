@@ -6,6 +6,9 @@ import tools.redstone.picasso.adapter.Adapter;
 import tools.redstone.picasso.adapter.AdapterRegistry;
 import tools.redstone.picasso.adapter.DynamicAdapterRegistry;
 
+import java.util.List;
+import java.util.Set;
+
 public class AdapterRegistryTest {
 
     class MockAdapter<A, B> implements Adapter<A, B> {
@@ -65,4 +68,74 @@ public class AdapterRegistryTest {
         Assertions.assertNull(registry.findAdapterFunction(Last.class, D.class));
     }
 
+    interface Left { }
+    interface Right { }
+    static class E implements Left, Right { }
+    static class F extends E { }
+
+    @Test
+    void test_AdapterRegistryHierarchy() {
+        // setup
+        AdapterRegistry registry = new DynamicAdapterRegistry();
+        registry.register(new MockAdapter<>(Right.class, Foo.class));
+        registry.register(new MockAdapter<>(Left.class, Foo.class));
+        registry.register(new MockAdapter<>(Object.class, Baz.class));
+
+        // assertions
+        Assertions.assertEquals(Left.class, registry.findAdapterFunction(E.class, Foo.class).srcClass());  // tie, declaration order
+        Assertions.assertEquals(Left.class, registry.findAdapterFunction(F.class, Foo.class).srcClass());
+        Assertions.assertEquals(Right.class, registry.findAdapterFunction(Right.class, Foo.class).srcClass());
+        Assertions.assertEquals(Object.class, registry.findAdapterFunction(Left.class, Bar.class).srcClass());
+
+        // closer adapter registered later
+        registry.register(new MockAdapter<>(F.class, Foo.class));
+        Assertions.assertEquals(F.class, registry.findAdapterFunction(F.class, Foo.class).srcClass());
+    }
+
+    @Test
+    void test_AdapterRegistryContainers() {
+        // setup
+        AdapterRegistry registry = new DynamicAdapterRegistry();
+        registry.register(new MockAdapter<>(Integer.class, String.class) {
+            @Override
+            public String toB(Integer val) {
+                return "#" + val;
+            }
+        });
+
+        // assertions
+        Assertions.assertEquals(List.of("#1", "#2"), registry.adaptAll(List.of(1, 2), Integer.class, String.class));
+        Assertions.assertEquals(List.of("#3"), registry.adaptAll(Set.of(3), Object.class, String.class));
+        Assertions.assertEquals("#5", registry.adaptingView(List.of(4, 5), Integer.class, String.class).get(1));
+        Assertions.assertArrayEquals(new String[] { "#6", null }, registry.adaptArray(new Integer[] { 6, null }, Integer.class, String.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.adaptAll(List.of(), Integer.class, Long.class));
+    }
+
+    @Test
+    void test_AdapterRegistryPath() {
+        // setup
+        AdapterRegistry registry = new DynamicAdapterRegistry();
+        registry.register(new MockAdapter<>(Integer.class, Long.class) {
+            @Override
+            public Long toB(Integer val) {
+                return val * 2L;
+            }
+        });
+        registry.register(new MockAdapter<>(Long.class, String.class) {
+            @Override
+            public String toB(Long val) {
+                return "#" + val;
+            }
+        });
+
+        // assertions
+        var function = registry.findAdapterFunction(Integer.class, String.class);
+        Assertions.assertNotNull(function);
+        Assertions.assertEquals(Integer.class, function.srcClass());
+        Assertions.assertEquals(String.class, function.dstClass());
+        Assertions.assertEquals("#42", function.adapt(21));
+        Assertions.assertSame(function, registry.findAdapterFunction(Integer.class, String.class));
+        Assertions.assertNull(registry.findAdapterFunction(Integer.class, Double.class));
+    }
+
 }
@@ -0,0 +1,109 @@
+package test.picasso;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import tools.redstone.picasso.AbstractionManager;
+import tools.redstone.picasso.AbstractionProvider;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ClassArchiveTest {
+
+    // archived classes extending classes which are not archived, and the other way around
+    public static class PlainBase { }
+    public static class ArchivedSub extends PlainBase { }
+    public static class ArchivedBase { }
+    public static class PlainSub extends ArchivedBase { }
+
+    static final String PREFIX = "test.picasso.ClassArchiveTest$"; // the classes are not loaded by the test loader
+
+    // Create a provider transforming the test classes
+    private static AbstractionProvider newProvider() {
+        return new AbstractionProvider(new AbstractionManager())
+                .setClassAuditPredicate(name -> name.startsWith(PREFIX));
+    }
+
+    @Test
+    void test_ClassArchive() throws Exception {
+        Path jar = Files.createTempFile("picasso-test", ".jar");
+        try {
+            // archive only the archived classes
+            AbstractionProvider first = newProvider();
+            first.findClass(PREFIX + "PlainBase");
+            first.exportTransformedClasses(true);
+            first.findClass(PREFIX + "ArchivedSub");
+            first.findClass(PREFIX + "ArchivedBase");
+            first.writeClassArchive(jar, "test");
+
+            Assertions.assertFalse(newProvider().useClassArchive(jar, "other"));
+            AbstractionProvider provider = newProvider();
+            Assertions.assertTrue(provider.useClassArchive(jar, "test"));
+
+            // load both hierarchies from two threads at once
+            CountDownLatch start = new CountDownLatch(1);
+            CompletableFuture<Class<?>> plainSub = CompletableFuture.supplyAsync(() -> {
+                awaitUninterruptibly(start);
+                return provider.findClass(PREFIX + "PlainSub");
+            });
+            CompletableFuture<Class<?>> archivedSub = CompletableFuture.supplyAsync(() -> {
+                awaitUninterruptibly(start);
+                return provider.findClass(PREFIX + "ArchivedSub");
+            });
+            start.countDown();
+
+            Class<?> plainSubClass = plainSub.get(10, TimeUnit.SECONDS);
+            Class<?> archivedSubClass = archivedSub.get(10, TimeUnit.SECONDS);
+            for (Class<?> klass : new Class<?>[] { plainSubClass, plainSubClass.getSuperclass(), archivedSubClass, archivedSubClass.getSuperclass() })
+                Assertions.assertSame(provider.getTransformingClassLoader(), klass.getClassLoader());
+
+            // archived classes are defined with the jar as code source
+            Assertions.assertEquals(jar.toUri().toURL(), archivedSubClass.getProtectionDomain().getCodeSource().getLocation());
+            Assertions.assertEquals(jar.toUri().toURL(), plainSubClass.getSuperclass().getProtectionDomain().getCodeSource().getLocation());
+        } finally {
+            Files.deleteIfExists(jar);
+        }
+    }
+
+    @Test
+    void test_ClassArchiveFingerprint() throws Exception {
+        Path jar = Files.createTempFile("picasso-test", ".jar");
+        try {
+            AbstractionProvider first = newProvider()
+                    .addAnalysisHook(AbstractionProvider.excludeCallsOnSelfAsDependencies())
+                    .addAnalysisHook(AbstractionProvider.checkStaticFieldsNotNull())
+                    .exportTransformedClasses(true);
+            first.findClass(PREFIX + "ArchivedBase");
+            first.writeClassArchive(jar, "test");
+
+            // the hooks and their order have to match
+            Assertions.assertFalse(newProvider().useClassArchive(jar, "test"));
+            Assertions.assertFalse(newProvider()
+                    .addAnalysisHook(AbstractionProvider.checkStaticFieldsNotNull())
+                    .addAnalysisHook(AbstractionProvider.excludeCallsOnSelfAsDependencies())
+                    .useClassArchive(jar, "test"));
+            Assertions.assertTrue(newProvider()
+                    .addAnalysisHook(AbstractionProvider.excludeCallsOnSelfAsDependencies())
+                    .addAnalysisHook(AbstractionProvider.checkStaticFieldsNotNull())
+                    .useClassArchive(jar, "test"));
+
+            // probe site ids are only valid in the run
+            first.enableRuntimeProbes(true);
+            Assertions.assertThrows(IllegalStateException.class, () -> first.writeClassArchive(jar, "test"));
+        } finally {
+            Files.deleteIfExists(jar);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package test.picasso;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import tools.redstone.picasso.util.classpath.ClassBytesSource;
+import tools.redstone.picasso.util.classpath.MappedJarClassBytesSource;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ClassBytesSourceTest {
+
+    static class Stored { }
+    static class Deflated { }
+
+    @Test
+    void test_MappedJar() throws Exception {
+        // setup
+        ClassBytesSource classLoaderSource = ClassBytesSource.ofClassLoader(getClass().getClassLoader());
+        byte[] storedBytes = classLoaderSource.getClassByteArray(Stored.class.getName());
+        byte[] deflatedBytes = classLoaderSource.getClassByteArray(Deflated.class.getName());
+
+        Path jar = Files.createTempFile("picasso-test", ".jar");
+        try (OutputStream out = Files.newOutputStream(jar); ZipOutputStream zip = new ZipOutputStream(out)) {
+            CRC32 crc = new CRC32();
+            crc.update(storedBytes);
+            ZipEntry storedEntry = new ZipEntry(Stored.class.getName().replace('.', '/') + ".class");
+            storedEntry.setMethod(ZipEntry.STORED);
+            storedEntry.setSize(storedBytes.length);
+            storedEntry.setCrc(crc.getValue());
+            zip.putNextEntry(storedEntry);
+            zip.write(storedBytes);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry(Deflated.class.getName().replace('.', '/') + ".class"));
+            zip.write(deflatedBytes);
+            zip.closeEntry();
+        }
+
+        // assertions
+        try {
+            ClassBytesSource source = ClassBytesSource.of(jar);
+            Assertions.assertTrue(source instanceof MappedJarClassBytesSource);
+            Assertions.assertArrayEquals(storedBytes, source.getClassByteArray(Stored.class.getName()));
+            Assertions.assertArrayEquals(deflatedBytes, source.getClassByteArray(Deflated.class.getName()));
+            Assertions.assertNull(source.getClassBytes("test.picasso.Missing"));
+        } finally {
+            Files.deleteIfExists(jar);
+        }
+    }
+
+}
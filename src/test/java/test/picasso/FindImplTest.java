@@ -7,10 +7,16 @@ import tools.redstone.picasso.usage.Abstraction;
 import tools.redstone.picasso.util.PackageWalker;
 import tools.redstone.picasso.util.ReflectUtil;
 
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 public class FindImplTest {
 
     public static void main(String[] args) {
         new FindImplTest().test_FindAndRegisterImpls();
+        new FindImplTest().test_RegisterIndexedImpls();
+        new FindImplTest().test_ImplPriority();
     }
 
     public interface A extends Abstraction { }
@@ -19,18 +25,64 @@ public class FindImplTest {
     public static class AImpl implements A { }
     public static class BImpl implements B { }
 
+    public interface C extends Abstraction { }
+
+    public static class CLow implements C { }
+    public static class CHigh implements C { }
+    public static class CLowLater implements C { }
+
     void test_FindAndRegisterImpls() {
         ReflectUtil.ensureLoaded(A.class);
         ReflectUtil.ensureLoaded(B.class);
         final AbstractionProvider abstractionProvider = new AbstractionProvider(AbstractionManager.getInstance());
-        new PackageWalker(this.getClass(), "test.abstracraft.core")
-                .findResources()
-                .filter(r -> r.trimmedName().endsWith("Impl"))
-                .forEach(abstractionProvider::loadAndRegisterImpl);
+        try (var resources = new PackageWalker(this.getClass(), FindImplTest.class.getPackageName()).findResources()) {
+            resources
+                    .filter(r -> r.name().startsWith(FindImplTest.class.getSimpleName() + "$"))
+                    .filter(r -> r.trimmedName().endsWith("Impl"))
+                    .forEach(abstractionProvider::loadAndRegisterImpl);
+        }
 
         // check impls registered
         Assertions.assertEquals(AImpl.class.getName(), abstractionProvider.getImplByClass(A.class).getName());
         Assertions.assertEquals(BImpl.class.getName(), abstractionProvider.getImplByClass(B.class).getName());
     }
 
+    void test_RegisterIndexedImpls() {
+        final AbstractionProvider abstractionProvider = new AbstractionProvider(new AbstractionManager());
+        Assertions.assertTrue(abstractionProvider.registerIndexedImpls() > 0);
+
+        // check impls are loaded on query
+        Assertions.assertEquals(AImpl.class.getName(), abstractionProvider.getImplByClass(A.class).getName());
+        Assertions.assertEquals(BImpl.class.getName(), abstractionProvider.getImplByClass(B.class).getName());
+
+        // every indexed impl of an abstraction is registered
+        Assertions.assertNotNull(abstractionProvider.getImplByClass(C.class));
+        Assertions.assertEquals(Set.of(CLow.class.getName(), CHigh.class.getName(), CLowLater.class.getName()),
+                abstractionProvider.abstractionManager().getImpls(C.class).stream().map(impl -> impl.implClass().getName()).collect(Collectors.toSet()));
+    }
+
+    void test_ImplPriority() {
+        final AbstractionManager manager = new AbstractionManager();
+        manager.registerImpl(CLow.class);
+        Assertions.assertEquals(CLow.class, manager.getImplByClass(C.class));
+
+        // higher priority wins regardless of order
+        manager.registerImpl(CHigh.class, 1);
+        manager.registerImpl(CLowLater.class);
+        Assertions.assertEquals(CHigh.class, manager.getImplByClass(C.class));
+        Assertions.assertEquals(List.of(CHigh.class, CLowLater.class, CLow.class),
+                manager.getImpls(C.class).stream().map(AbstractionManager.RegisteredImpl::implClass).toList());
+
+        // unregistering falls back to the next impl
+        manager.unregisterImpl(CHigh.class);
+        Assertions.assertEquals(CLowLater.class, manager.getImplByClass(C.class));
+        manager.unregisterImpls(FindImplTest.class.getClassLoader());
+        Assertions.assertNull(manager.getImplByClass(C.class));
+
+        // batches are registered in order, skipping non-impl classes
+        manager.registerImpls(List.of(CLow.class, FindImplTest.class, CLowLater.class), 0);
+        Assertions.assertEquals(List.of(CLowLater.class, CLow.class),
+                manager.getImpls(C.class).stream().map(AbstractionManager.RegisteredImpl::implClass).toList());
+    }
+
 }
@@ -0,0 +1,248 @@
+package test.picasso;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.objectweb.asm.ClassWriter;
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.metrics.AnalysisProfiler;
+import tools.redstone.picasso.metrics.HookCosts;
+import tools.redstone.picasso.metrics.PicassoEvents;
+import tools.redstone.picasso.metrics.ProviderMetrics;
+import tools.redstone.picasso.metrics.RuntimeProbes;
+import tools.redstone.picasso.usage.Abstraction;
+import tools.redstone.picasso.usage.Usage;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import javax.management.ObjectName;
+
+public class MetricsTest {
+
+    public static void main(String[] args) throws Throwable {
+        TestSystem.runTests(MetricsTest.class, true);
+    }
+
+    /* --------------------------------------------------- */
+
+    /** Example abstraction */
+    public interface Abc extends Abstraction {
+        default String a() { return unimplemented(); }
+        default String b() { return unimplemented(); }
+        default String d() { return "DDDDDD"; }
+        default String e() { return unimplemented(); }
+    }
+
+    /** Example impl */
+    public static class AbcImpl implements Abc {
+        @Override
+        public String a() {
+            return "AAAAAA";
+        }
+    }
+
+    /* --------------------------------------------------- */
+
+    public interface Tests {
+        String testA(Abc abc);
+        default String testB(Abc abc) { return null; }
+        default String testE(Abc abc) { return null; }
+    }
+
+    /** Class with an implemented and an unimplemented dependency */
+    @Disabled
+    public static class TestClass implements Tests {
+        public String testA(Abc abc) {
+            return abc.a();
+        }
+
+        @Override
+        public String testB(Abc abc) {
+            return abc.b();
+        }
+    }
+
+    /** Class which is analyzed but never loaded */
+    @Disabled
+    public static class UnloadedClass implements Tests {
+        public String testA(Abc abc) {
+            return abc.b();
+        }
+    }
+
+    /** Class analyzed while profiling */
+    @Disabled
+    public static class ProfiledClass implements Tests {
+        public String testA(Abc abc) {
+            return deep(abc);
+        }
+
+        String deep(Abc abc) {
+            return abc.b();
+        }
+    }
+
+    /** Class transformed with runtime probes */
+    @Disabled
+    public static class ProbedClass implements Tests {
+        public String testA(Abc abc) {
+            return Usage.optionally(() -> abc.a()).orElse("A");
+        }
+
+        @Override
+        public String testB(Abc abc) {
+            return Usage.either(abc::b, abc::d);
+        }
+
+        @Override
+        public String testE(Abc abc) {
+            return Usage.optionally(() -> abc.e()).orElse("E");
+        }
+    }
+
+    /* --------------------------------------------------- */
+
+    Recording recording;
+    AnalysisProfiler profiler;
+    List<HookCosts.Warning> warnings;
+
+    @TestSystem.Test(testClass = "TestClass", abstractionImpl = "AbcImpl")
+    void test_Metrics(Tests testInstance, AbstractionProvider abstractionManager) throws Throwable {
+        ProviderMetrics metrics = abstractionManager.getMetrics();
+        Assertions.assertTrue(metrics.getReadTime().getCount() > 0);
+        Assertions.assertTrue(metrics.getAnalyzeTime().getCount() > 0);
+        Assertions.assertTrue(metrics.getDefineTime().getCount() > 0);
+        Assertions.assertTrue(metrics.getBytesOut() > 0);
+        Assertions.assertTrue(metrics.getNotImplementedThrowsInserted() > 0);
+
+        // inserted throws are counted once when analyzed, not per write
+        abstractionManager.getClassAnalysis(UnloadedClass.class.getName());
+        long throwsInserted = metrics.getNotImplementedThrowsInserted();
+        abstractionManager.analyzerOrNull(UnloadedClass.class.getName()).getClassNode().accept(new ClassWriter(ClassWriter.COMPUTE_MAXS));
+        Assertions.assertEquals(throwsInserted, metrics.getNotImplementedThrowsInserted());
+
+        // the bytes of defined classes are not kept
+        long reads = metrics.getReadTime().getCount();
+        abstractionManager.getClassReader(testInstance.getClass().getName());
+        Assertions.assertEquals(reads + 1, metrics.getReadTime().getCount());
+
+        // read through the platform MBean server
+        ObjectName name = abstractionManager.registerMetricsMBean("test_Metrics");
+        try {
+            Assertions.assertEquals(metrics.getBytesIn(), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "BytesIn"));
+        } finally {
+            abstractionManager.unregisterMetricsMBean();
+        }
+
+        Assertions.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    void setup_test_FlightRecorderEvents(TestSystem.TestInterface testInterface) {
+        recording = new Recording();
+        recording.enable(PicassoEvents.AnalyzerCreated.class);
+        recording.enable(PicassoEvents.AnalyzeClass.class);
+        recording.enable(PicassoEvents.DefineClass.class);
+        recording.start();
+    }
+
+    @TestSystem.Test(testClass = "TestClass", abstractionImpl = "AbcImpl")
+    void test_FlightRecorderEvents(Tests testInstance) throws Throwable {
+        Path file = Files.createTempFile("picasso-test", ".jfr");
+        try (Recording recording = this.recording) {
+            recording.stop();
+            recording.dump(file);
+
+            // check the events were attributed to the class
+            Set<String> eventNames = new HashSet<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.hasField("className") && testInstance.getClass().getName().equals(event.getString("className")))
+                    eventNames.add(event.getEventType().getName());
+            }
+
+            Assertions.assertEquals(Set.of("tools.redstone.picasso.AnalyzerCreated", "tools.redstone.picasso.AnalyzeClass", "tools.redstone.picasso.DefineClass"), eventNames);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    void setup_test_AnalysisProfiler(TestSystem.TestInterface testInterface) {
+        profiler = new AnalysisProfiler();
+        testInterface.abstractionProvider().setAnalysisProfiler(profiler);
+    }
+
+    @TestSystem.Test(testClass = "ProfiledClass", abstractionImpl = "AbcImpl")
+    void test_AnalysisProfiler(Tests testInstance, AbstractionProvider abstractionManager) throws Throwable {
+        abstractionManager.setAnalysisProfiler(null);
+        final String className = testInstance.getClass().getName();
+
+        // the call from testA to deep is nested in the folded output
+        StringWriter writer = new StringWriter();
+        profiler.writeFolded(writer);
+        final String a = className + ".testA(L" + Abc.class.getName().replace('.', '/') + ",)Ljava/lang/String,";
+        final String deep = className + ".deep(L" + Abc.class.getName().replace('.', '/') + ",)Ljava/lang/String,";
+        Assertions.assertTrue(writer.toString().lines().anyMatch(line -> line.startsWith(a + ";" + deep + " ")), writer.toString());
+
+        var costs = profiler.getClassCosts(10);
+        Assertions.assertEquals(className, costs.get(0).className());
+        Assertions.assertTrue(costs.get(0).methodsAnalyzed() >= 2);
+    }
+
+    void setup_test_RuntimeProbes(TestSystem.TestInterface testInterface) {
+        testInterface.abstractionProvider().enableRuntimeProbes(true);
+    }
+
+    @TestSystem.Test(testClass = "ProbedClass", abstractionImpl = "AbcImpl")
+    void test_RuntimeProbes(Tests testInstance, AbstractionProvider abstractionManager, Abc abc) throws Throwable {
+        abstractionManager.enableRuntimeProbes(false);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("AAAAAA", testInstance.testA(abc));
+            Assertions.assertEquals("DDDDDD", testInstance.testB(abc));
+            Assertions.assertEquals("E", testInstance.testE(abc));
+        }
+
+        // each site counts its decision
+        final String className = testInstance.getClass().getName();
+        Map<String, RuntimeProbes.SiteSnapshot> sites = new HashMap<>();
+        for (var site : abstractionManager.getRuntimeProbes().snapshot())
+            if (site.method().startsWith(className + "."))
+                sites.put(site.method().substring(className.length() + 1, site.method().indexOf('(')), site);
+        Assertions.assertEquals(RuntimeProbes.Kind.OPTIONALLY, sites.get("testA").kind());
+        Assertions.assertEquals(3, sites.get("testA").taken());
+        Assertions.assertEquals(RuntimeProbes.Kind.EITHER, sites.get("testB").kind());
+        Assertions.assertEquals(3, sites.get("testB").fallback());
+        Assertions.assertEquals(3, sites.get("testE").fallback());
+
+        StringWriter writer = new StringWriter();
+        abstractionManager.getRuntimeProbes().writeCsv(writer);
+        Assertions.assertTrue(writer.toString().startsWith("id,kind,method,detail,taken,fallback,thrown\n"));
+    }
+
+    void setup_test_HookCosts(TestSystem.TestInterface testInterface) {
+        warnings = new ArrayList<>();
+        testInterface.abstractionProvider().getMetrics().hookCosts
+                .setWarningBudget(0, warnings::add);
+    }
+
+    @TestSystem.Test(testClass = "TestClass", abstractionImpl = "AbcImpl")
+    void test_HookCosts(AbstractionProvider abstractionManager) throws Throwable {
+        HookCosts hookCosts = abstractionManager.getMetrics().hookCosts;
+        hookCosts.setWarningBudget(-1, null);
+
+        var costs = hookCosts.snapshot();
+        Assertions.assertTrue(costs.stream().anyMatch(cost -> cost.getCallback().equals("isDependencyCandidate") && cost.getCalls() > 0));
+        Assertions.assertTrue(costs.stream().anyMatch(cost -> cost.getCallback().equals("visitMethod") && cost.getCalls() > 0));
+
+        // every callback over budget is reported once
+        Assertions.assertFalse(warnings.isEmpty());
+        Assertions.assertEquals(warnings.size(), warnings.stream().map(w -> w.hookClass() + "." + w.callback()).distinct().count());
+        Assertions.assertTrue(costs.stream().allMatch(cost -> cost.getOverBudget() <= cost.getCalls()));
+    }
+
+}
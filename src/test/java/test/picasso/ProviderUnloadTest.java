@@ -0,0 +1,43 @@
+package test.picasso;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import tools.redstone.picasso.AbstractionManager;
+import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.util.ReflectUtil;
+
+import java.lang.ref.WeakReference;
+
+public class ProviderUnloadTest {
+
+    public static class Loaded { }
+
+    // Load the class through a new provider and
+    // return a weak reference to its loader
+    private static WeakReference<ClassLoader> loadThroughProvider(String className) {
+        AbstractionProvider provider = new AbstractionProvider(new AbstractionManager())
+                .setClassAuditPredicate(className::equals);
+        Class<?> klass = provider.findClass(className);
+        Assertions.assertSame(provider.getTransformingClassLoader(), klass.getClassLoader());
+        Assertions.assertSame(klass, ReflectUtil.getClass(className, provider.getTransformingClassLoader()));
+        return new WeakReference<>(provider.getTransformingClassLoader());
+    }
+
+    @Test
+    void test_ProviderUnload() throws Exception {
+        final String className = "test.picasso.ProviderUnloadTest$Loaded"; // not loaded by the test loader
+        WeakReference<ClassLoader> first = loadThroughProvider(className);
+        WeakReference<ClassLoader> second = loadThroughProvider(className);
+        Assertions.assertNotSame(first.get(), second.get());
+
+        // the loaders should be collectable once the providers are discarded
+        for (int i = 0; i < 50 && (first.get() != null || second.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        Assertions.assertNull(first.get());
+        Assertions.assertNull(second.get());
+    }
+
+}
@@ -3,11 +3,19 @@ package test.picasso;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import tools.redstone.picasso.AbstractionProvider;
+import tools.redstone.picasso.analysis.ClassAnalysis;
+import tools.redstone.picasso.analysis.ClassSummary;
 import tools.redstone.picasso.analysis.ReferenceInfo;
 import tools.redstone.picasso.usage.Abstraction;
 import tools.redstone.picasso.usage.NoneImplementedException;
 import tools.redstone.picasso.usage.NotImplementedException;
 import tools.redstone.picasso.usage.Usage;
+import tools.redstone.picasso.util.ReflectUtil;
+import tools.redstone.picasso.util.classpath.ClassBytesSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class SimpleDependencyTest {
 
@@ -98,6 +106,48 @@ public class SimpleDependencyTest {
         }
     }
 
+    /** Class which is only checked by name, never loaded */
+    @Disabled
+    public static class UncheckedClass {
+        public String a(Abc abc) {
+            return abc.a();
+        }
+
+        public String c(Abc abc) {
+            return abc.c();
+        }
+    }
+
+    /** The tests of the smaller fixtures */
+    public interface Fixture {
+        String testA(Abc abc);
+        String testB(Abc abc);
+    }
+
+    /** Class whose analyzer is released once defined */
+    @Disabled
+    public static class ReleasedClass implements Fixture {
+        public String testA(Abc abc) {
+            return abc.a();
+        }
+
+        public String testB(Abc abc) {
+            return Usage.optionally(() -> abc.d()).orElse("D");
+        }
+    }
+
+    /** Class running blocks through optionally(Runnable) */
+    @Disabled
+    public static class RunnableClass implements Fixture {
+        public String testA(Abc abc) {
+            return String.valueOf(Usage.optionally(() -> { abc.a(); }));
+        }
+
+        public String testB(Abc abc) {
+            return String.valueOf(Usage.optionally(() -> { abc.e(); }));
+        }
+    }
+
     @TestSystem.Test(testClass = "TestClass", abstractionImpl = "AbcImpl")
     void test_Unimplemented(Tests testInstance, AbstractionProvider abstractionManager, Abc abc) throws Throwable {
         Assertions.assertTrue(abstractionManager.isImplemented(ReferenceInfo.forMethodInfo(Abc.class, "d", false, String.class)));
@@ -116,4 +166,73 @@ public class SimpleDependencyTest {
         TestSystem.assertDependenciesEquals(abstractionManager.getClassAnalysis(testInstance.getClass()).dependencies, "required Abc.a", "required Abc.b", "required Abc.d", "optional Abc.c", "optional Abc.e", "optional Abc.UNIMPLEMENTED", "required Abc.UNIMPLEMENTED2", "none", "one Abc.d");
     }
 
+    @TestSystem.Test(abstractionImpl = "AbcImpl")
+    void test_UnimplementedByName(TestSystem.TestInterface testInterface, AbstractionProvider abstractionManager) throws Throwable {
+        final String className = testInterface.className(".UncheckedClass");
+        Assertions.assertFalse(abstractionManager.allImplemented(className));
+        Assertions.assertEquals(Map.of(className, false), abstractionManager.allImplemented(List.of(className)));
+        Assertions.assertNull(ReflectUtil.findLoadedClass(abstractionManager.getTransformingClassLoader(), className));
+        Assertions.assertTrue(abstractionManager.getClassAnalysis(className).completed);
+
+        // define from the kept transformed bytes
+        Assertions.assertSame(abstractionManager.getTransformingClassLoader(), abstractionManager.findClass(className).getClassLoader());
+    }
+
+    @TestSystem.Test(abstractionImpl = "AbcImpl")
+    void test_ReleaseAnalyzers(TestSystem.TestInterface testInterface, AbstractionProvider abstractionManager) throws Throwable {
+        final String className = testInterface.className(".ReleasedClass");
+        abstractionManager.releaseAnalyzers(true).setSummaryBudget(0);
+        ClassSummary summary = abstractionManager.getClassSummary(className);
+        Assertions.assertNotNull(abstractionManager.analyzerOrNull(className));
+
+        // define and release
+        abstractionManager.findClass(className);
+        Assertions.assertNull(abstractionManager.analyzerOrNull(className));
+        Assertions.assertEquals(0, abstractionManager.getSummaryCache().strongSize());
+        Assertions.assertEquals(summary.areAllImplemented(abstractionManager), abstractionManager.allImplemented(className));
+        Assertions.assertEquals(Set.copyOf(summary.dependencies()), Set.copyOf(abstractionManager.getClassSummary(className).dependencies()));
+        Assertions.assertEquals(summary.methods().keySet(), abstractionManager.getClassSummary(className).methods().keySet());
+    }
+
+    void setup_test_ReleasedSummaryCollected(TestSystem.TestInterface testInterface) {
+        testInterface.abstractionProvider().releaseAnalyzers(true).setSummaryBudget(0);
+    }
+
+    @TestSystem.Test(testClass = "ReleasedClass", abstractionImpl = "AbcImpl")
+    void test_ReleasedSummaryCollected(Fixture testInstance, AbstractionProvider abstractionManager) throws Throwable {
+        Assertions.assertNull(abstractionManager.analyzerOrNull(testInstance.getClass()));
+        abstractionManager.getSummaryCache().clearSoft();
+
+        // summarized again without bringing the analyzer back
+        Assertions.assertTrue(abstractionManager.allImplemented(testInstance.getClass()));
+        Assertions.assertNull(abstractionManager.analyzerOrNull(testInstance.getClass()));
+
+        // answered from the summary, or a recomputed one
+        TestSystem.assertDependenciesEquals(abstractionManager.getClassAnalysis(testInstance.getClass()).dependencies, "required Abc.a", "optional Abc.d");
+        abstractionManager.getSummaryCache().clearSoft();
+        ClassAnalysis analysis = abstractionManager.getClassAnalysis(testInstance.getClass());
+        Assertions.assertTrue(analysis.completed);
+        TestSystem.assertDependenciesEquals(analysis.dependencies, "required Abc.a", "optional Abc.d");
+        Assertions.assertNull(abstractionManager.analyzerOrNull(testInstance.getClass()));
+    }
+
+    void setup_test_PartialBytesSource(TestSystem.TestInterface testInterface) {
+        // only the test class is in the source, not the abstraction
+        final String className = testInterface.className(".ReleasedClass");
+        final ClassBytesSource loaderSource = ClassBytesSource.ofClassLoader(getClass().getClassLoader());
+        testInterface.abstractionProvider().setClassBytesSource(name -> name.equals(className) ? loaderSource.getClassBytes(name) : null);
+    }
+
+    @TestSystem.Test(testClass = "ReleasedClass", abstractionImpl = "AbcImpl")
+    void test_PartialBytesSource(Fixture testInstance, AbstractionProvider abstractionManager, Abc abc) throws Throwable {
+        Assertions.assertTrue(abstractionManager.allImplemented(testInstance.getClass()));
+        Assertions.assertEquals(abc.d(), testInstance.testB(abc));
+    }
+
+    @TestSystem.Test(testClass = "RunnableClass", abstractionImpl = "AbcImpl")
+    void test_OptionallyRunnable(Fixture testInstance, Abc abc) throws Throwable {
+        Assertions.assertEquals("true", testInstance.testA(abc));
+        Assertions.assertEquals("false", testInstance.testB(abc));
+    }
+
 }
@@ -38,9 +38,7 @@ public class TestSystem {
                 // find full class name
                 if (cName == null || cName.isEmpty())
                     cName = "." + testMethod;
-                cName = cName.startsWith(".") ?
-                        rootClass.getName() + cName.replace('.', '$') :
-                        cName;
+                cName = className(cName);
 
                 // load class
                 Class<?> klass = abstractionProvider.findClass(cName);
@@ -77,6 +75,14 @@ public class TestSystem {
         public <T> T runTransformed(String mName, Object... args) {
             return runTransformed(null, mName, args);
         }
+
+        // Get the full name of the given class, names
+        // starting with a dot are nested in the root class
+        public String className(String cName) {
+            return cName.startsWith(".") ?
+                    rootClass.getName() + cName.replace('.', '$') :
+                    cName;
+        }
     }
 
     // Signifies a test
@@ -179,11 +185,12 @@ public class TestSystem {
 
                 // auto register impls
                 if (testAnnotation.autoRegisterImpls()) {
-                    new PackageWalker(klass, klass.getPackageName())
-                            .findResources()
-                            .filter(r -> r.name().startsWith(klass.getSimpleName() + "$"))
-                            .filter(r -> r.trimmedName().endsWith("Impl"))
-                            .forEach(abstractionProvider::loadAndRegisterImpl);
+                    try (var resources = new PackageWalker(klass, klass.getPackageName()).findResources()) {
+                        resources
+                                .filter(r -> r.name().startsWith(klass.getSimpleName() + "$"))
+                                .filter(r -> r.trimmedName().endsWith("Impl"))
+                                .forEach(abstractionProvider::loadAndRegisterImpl);
+                    }
                 }
 
                 long t2 = System.currentTimeMillis();